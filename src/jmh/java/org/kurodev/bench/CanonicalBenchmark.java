@@ -0,0 +1,62 @@
+package org.kurodev.bench;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+import org.kurodev.sudoku.symmetry.Canonicalizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many sudokus per second one {@link Canonicalizer} hashes, like deduplicating a puzzle bank.
+ * Every invocation hashes a fixed batch of distinct puzzles or their solutions, so the score is per sudoku.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CanonicalBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"EASY", "HARD"})
+    public Difficulty difficulty;
+
+    private Sudoku[] puzzles;
+    private Sudoku[] solutions;
+    private final Canonicalizer canonicalizer = new Canonicalizer();
+
+    @Setup
+    public void setup() {
+        List<SudokuWithSolution> games = SudokuFactory.createBatch(difficulty, BATCH, "canonical");
+        DancingLinksSolver solver = new DancingLinksSolver();
+        puzzles = new Sudoku[BATCH];
+        solutions = new Sudoku[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            puzzles[i] = games.get(i).getInitialGameState();
+            solutions[i] = solver.solve(puzzles[i]).solution();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void puzzles(Blackhole bh) {
+        for (Sudoku puzzle : puzzles) {
+            bh.consume(canonicalizer.hash(puzzle));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void solutions(Blackhole bh) {
+        for (Sudoku solution : solutions) {
+            bh.consume(canonicalizer.hash(solution));
+        }
+    }
+}
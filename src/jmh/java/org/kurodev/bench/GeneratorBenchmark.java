@@ -0,0 +1,29 @@
+package org.kurodev.bench;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures puzzle generation. The seed is fixed so every run generates exactly the same puzzles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeneratorBenchmark {
+    private static final String SEED = "benchmark";
+
+    @Param
+    public Difficulty difficulty;
+
+    @Benchmark
+    public SudokuWithSolution create() {
+        return SudokuFactory.create(difficulty, SEED);
+    }
+}
@@ -0,0 +1,115 @@
+package org.kurodev.bench;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.Coordinate;
+import org.kurodev.sudoku.io.SudokuCodec;
+import org.kurodev.sudoku.symmetry.CanonicalHash;
+import org.kurodev.sudoku.symmetry.Canonicalizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hot paths of {@link Sudoku} and {@link SudokuWithSolution} on a fixed puzzle.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SudokuBenchmark {
+    private static final Coordinate POS = new Coordinate(4, 4);
+
+    private SudokuWithSolution game;
+    private Sudoku puzzle;
+    private byte[] state;
+    private byte[] saved;
+    private ByteBuffer direct;
+    private Sudoku target;
+    private final Canonicalizer canonicalizer = new Canonicalizer();
+
+    @Setup
+    public void setup() throws IOException {
+        game = SudokuFactory.create(Difficulty.MEDIUM, "benchmark");
+        puzzle = game.getInitialGameState();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        puzzle.writeState(out);
+        state = out.toByteArray();
+        out.reset();
+        game.save(out);
+        saved = out.toByteArray();
+        direct = ByteBuffer.allocateDirect(state.length);
+        target = puzzle.copyState();
+    }
+
+    @Benchmark
+    public void isNumberValid(Blackhole bh) {
+        for (int num = 1; num <= Sudoku.FIELD_SIZE; num++) {
+            bh.consume(puzzle.isNumberValid(num, POS));
+        }
+    }
+
+    @Benchmark
+    public boolean isValidSudoku() {
+        return puzzle.isValidSudoku();
+    }
+
+    @Benchmark
+    public Sudoku copyState() {
+        return puzzle.copyState();
+    }
+
+    @Benchmark
+    public byte[] writeState() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.length);
+        puzzle.writeState(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Sudoku readState() throws IOException {
+        return Sudoku.ofState(new ByteArrayInputStream(state));
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        direct.clear();
+        SudokuCodec.encode(puzzle, direct);
+        return direct;
+    }
+
+    @Benchmark
+    public Sudoku decodeInto() {
+        direct.clear();
+        SudokuCodec.encode(puzzle, direct);
+        direct.flip();
+        SudokuCodec.decode(direct, target);
+        return target;
+    }
+
+    @Benchmark
+    public CanonicalHash canonicalHash() {
+        return canonicalizer.hash(puzzle);
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(saved.length);
+        game.save(out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public SudokuWithSolution load() throws IOException {
+        return SudokuFactory.load(new ByteArrayInputStream(saved));
+    }
+}
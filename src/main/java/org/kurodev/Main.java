@@ -1,11 +1,20 @@
 package org.kurodev;
 
+import org.kurodev.cli.Cli;
+import org.kurodev.metrics.Metrics;
 import org.kurodev.ui.MainWindow;
 
 import javax.swing.*;
 
 public class Main {
     public static void main(String[] args) {
+        if (Metrics.isEnabled()) {
+            //stderr, so the headless mode can still write puzzles to stdout
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(Metrics.snapshot())));
+        }
+        if (args.length > 0) {
+            System.exit(Cli.run(args));
+        }
         MainWindow window = new MainWindow();
         SwingUtilities.invokeLater(window::createAndShowGUI);
     }
@@ -0,0 +1,122 @@
+package org.kurodev.cli;
+
+import org.kurodev.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Processes a stream of inputs on several worker threads and hands the results to a sink in input order.
+ * <p>
+ * At most {@code queueSize} inputs are in flight at any time, counting both the ones waiting for a worker
+ * and the finished ones waiting for an earlier result. Inputs are only pulled from the iterator once there is room,
+ * so the amount of memory used does not depend on the amount of inputs.
+ */
+public class BatchRunner {
+    private final int workers;
+    private final int queueSize;
+
+    /**
+     * @param workers   The amount of threads processing inputs
+     * @param queueSize The maximum amount of inputs in flight, at least the amount of workers
+     */
+    public BatchRunner(int workers, int queueSize) {
+        if (workers < 1) throw new IllegalArgumentException("Workers must be at least 1 but was " + workers);
+        if (queueSize < workers)
+            throw new IllegalArgumentException("Queue size must be at least the amount of workers but was " + queueSize);
+        this.workers = workers;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param inputs Read on the calling thread
+     * @param task   Run on the worker threads, it must be thread-safe
+     * @param sink   Called on the calling thread, in the order of the inputs
+     * @return The amount of processed inputs and how long processing them took
+     * @throws IOException if the sink fails, remaining inputs are not processed then
+     */
+    public <I, O> Stats run(Iterator<I> inputs, Function<I, O> task, Sink<O> sink) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread thread = new Thread(r, "Batch Worker " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        LatencyHistogram latencies = new LatencyHistogram();
+        Deque<Future<O>> window = new ArrayDeque<>(queueSize);
+        long start = System.nanoTime();
+        long count = 0;
+        try {
+            while (inputs.hasNext()) {
+                if (window.size() == queueSize) {
+                    sink.accept(await(window.poll()));
+                }
+                I input = inputs.next();
+                window.add(executor.submit(() -> {
+                    long begin = System.nanoTime();
+                    O out = task.apply(input);
+                    latencies.record(System.nanoTime() - begin);
+                    return out;
+                }));
+                count++;
+            }
+            while (!window.isEmpty()) {
+                sink.accept(await(window.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Stats(count, System.nanoTime() - start, workers, latencies);
+    }
+
+    private static <O> O await(Future<O> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a result", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Task failed", e.getCause());
+        }
+    }
+
+    @FunctionalInterface
+    public interface Sink<O> {
+        void accept(O result) throws IOException;
+    }
+
+    /**
+     * @param count     The amount of processed inputs
+     * @param nanos     The wall time of the whole run
+     * @param latencies The time each input spent on its worker
+     */
+    public record Stats(long count, long nanos, int workers, LatencyHistogram latencies) {
+        public double perSecond() {
+            return nanos == 0 ? 0 : count * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d in %.3f s with %d workers (%.1f/s)%n" +
+                            "latency p50=%s p90=%s p99=%s p99.9=%s max=%s",
+                    count, nanos / 1e9, workers, perSecond(),
+                    LatencyHistogram.format(latencies.percentile(50)), LatencyHistogram.format(latencies.percentile(90)),
+                    LatencyHistogram.format(latencies.percentile(99)), LatencyHistogram.format(latencies.percentile(99.9)),
+                    LatencyHistogram.format(latencies.max()));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.kurodev.cli;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.SolveResult;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuSolver;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.SudokuGenerator;
+import org.kurodev.sudoku.io.LineFormatReader;
+import org.kurodev.sudoku.io.LineFormatWriter;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch mode, used when the program is started with arguments.
+ * Puzzles are read and written in the line format of {@link LineFormatReader}.
+ * <pre>
+ * --solve IN OUT                     solve every puzzle of IN and write the solutions to OUT
+ * --generate N --difficulty LEVEL    generate N puzzles
+ *   [--seed SEED] [--unique] [--out OUT]
+ * options: [--threads N] [--queue N]
+ * </pre>
+ * Without {@code --out} generated puzzles are written to the standard output.
+ * Throughput and latency percentiles are printed to the standard error when the batch is done.
+ * Started with {@code -Dsudoku.metrics=true}, the engine {@link org.kurodev.metrics.Metrics} are printed there on exit as well.
+ */
+public class Cli {
+    private static final ThreadLocal<SudokuSolver> SOLVERS = ThreadLocal.withInitial(DancingLinksSolver::new);
+
+    private final PrintStream err;
+    private Mode mode;
+    private Path in;
+    private Path out;
+    private int count;
+    private Difficulty difficulty;
+    private String seed = SudokuFactory.randomSeed();
+    private boolean unique;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queue = -1;
+
+    private Cli(PrintStream err) {
+        this.err = err;
+    }
+
+    /**
+     * @return The exit code: 0 on success, 1 if the batch failed and 2 for invalid arguments
+     */
+    public static int run(String[] args) {
+        Cli cli = new Cli(System.err);
+        try {
+            cli.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            return 2;
+        }
+        try {
+            return cli.execute();
+        } catch (IOException | UncheckedIOException | IllegalStateException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--solve" -> {
+                    mode = Mode.SOLVE;
+                    in = Path.of(value(args, ++i));
+                    out = Path.of(value(args, ++i));
+                }
+                case "--generate" -> {
+                    mode = Mode.GENERATE;
+                    count = number(args, ++i);
+                }
+                case "--difficulty" -> {
+                    String level = value(args, ++i);
+                    try {
+                        difficulty = Difficulty.valueOf(level.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown difficulty " + level);
+                    }
+                }
+                case "--seed" -> seed = value(args, ++i);
+                case "--unique" -> unique = true;
+                case "--out" -> out = Path.of(value(args, ++i));
+                case "--threads" -> threads = number(args, ++i);
+                case "--queue" -> queue = number(args, ++i);
+                default -> throw new IllegalArgumentException("Unknown argument " + args[i]);
+            }
+        }
+        if (mode == null) throw new IllegalArgumentException("Either --solve or --generate is required");
+        if (mode == Mode.GENERATE && difficulty == null) throw new IllegalArgumentException("--generate requires --difficulty");
+        if (threads < 1) throw new IllegalArgumentException("--threads must be at least 1");
+        if (queue < 0) {
+            queue = 4 * threads;
+        } else if (queue < threads) {
+            throw new IllegalArgumentException("--queue must be at least the amount of threads");
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException(args[i - 1] + " is missing a value");
+        return args[i];
+    }
+
+    private static int number(String[] args, int i) {
+        String value = value(args, i);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(args[i - 1] + " expects a number but got " + value);
+        }
+    }
+
+    private int execute() throws IOException {
+        BatchRunner runner = new BatchRunner(threads, queue);
+        return switch (mode) {
+            case SOLVE -> solve(runner);
+            case GENERATE -> generate(runner);
+        };
+    }
+
+    private int solve(BatchRunner runner) throws IOException {
+        int[] unsolved = new int[1];
+        BatchRunner.Stats stats;
+        try (Stream<Sudoku> puzzles = LineFormatReader.lines(in);
+             LineFormatWriter writer = LineFormatWriter.create(out)) {
+            stats = runner.run(puzzles.iterator(), puzzle -> {
+                SolveResult result = SOLVERS.get().solve(puzzle);
+                return result.isSolved() ? result.solution() : null;
+            }, solution -> {
+                if (solution == null) {
+                    //keeps the output aligned with the input lines
+                    unsolved[0]++;
+                    writer.write(Sudoku.ofSize(Grid.STANDARD));
+                } else {
+                    writer.write(solution);
+                }
+            });
+        }
+        err.println("Solved " + stats);
+        if (unsolved[0] > 0) {
+            err.println(unsolved[0] + " puzzles had no solution and were written as blank lines of '.'");
+        }
+        return 0;
+    }
+
+    private int generate(BatchRunner runner) throws IOException {
+        SudokuGenerator generator = unique ? BacktrackingSudokuGenerator.unique() : new BacktrackingSudokuGenerator();
+        Iterator<Integer> indices = IntStream.range(0, count).iterator();
+        BatchRunner.Stats stats;
+        LineFormatWriter writer = out == null
+                ? new LineFormatWriter(Channels.newChannel(System.out))
+                : LineFormatWriter.create(out);
+        try (writer) {
+            stats = runner.run(indices,
+                    i -> SudokuFactory.create(difficulty, SudokuFactory.childSeed(seed, i), generator).getInitialGameState(),
+                    writer::write);
+        }
+        err.println("Generated " + stats);
+        err.println("Seed: " + seed);
+        return 0;
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("""
+                Usage:
+                  --solve IN OUT                     solve every puzzle of IN and write the solutions to OUT
+                  --generate N --difficulty LEVEL    generate N puzzles
+                      [--seed SEED] [--unique] [--out OUT]
+                options:
+                  --threads N   amount of worker threads, defaults to the amount of processors
+                  --queue N     maximum amount of puzzles in flight, defaults to 4 per thread""");
+    }
+
+    private enum Mode {
+        SOLVE, GENERATE
+    }
+}
@@ -0,0 +1,20 @@
+package org.kurodev.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of handling a number entered by the player on the event dispatch thread
+ */
+@Name("org.kurodev.sudoku.BoardInput")
+@Label("Board Input")
+@Category("Sudoku")
+public class BoardInputEvent extends Event {
+    @Label("Cell")
+    public int cell;
+
+    @Label("Number")
+    public int num;
+}
@@ -0,0 +1,36 @@
+package org.kurodev.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a single puzzle generation, from the seed to the finished puzzle
+ */
+@Name("org.kurodev.sudoku.Generation")
+@Label("Puzzle Generation")
+@Category("Sudoku")
+public class GenerationEvent extends Event {
+    @Label("Difficulty")
+    public String difficulty;
+
+    @Label("Size")
+    @Description("Amount of rows of the field")
+    public int size;
+
+    @Label("Iterations")
+    @Description("Steps of the backtracking fill of the solution")
+    public long iterations;
+
+    @Label("Backtracks")
+    @Description("Times the fill had to undo a number")
+    public long backtracks;
+
+    @Label("Clues")
+    public int clues;
+
+    @Label("Cancelled")
+    public boolean cancelled;
+}
@@ -0,0 +1,97 @@
+package org.kurodev.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Thread-safe histogram of durations in nanoseconds with a fixed memory footprint.
+ * <p>
+ * Values are counted in buckets that are powers of two, each split into {@value #SUB_BUCKETS} linear sub buckets,
+ * so every reported percentile is within about 6% of the recorded value.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        max.accumulate(nanos);
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        //shift the value so its highest bit is the sub bucket bit, the shift is then the power of two bucket
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> exponent) - SUB_BUCKETS;
+        return (exponent + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return The highest value that falls into the bucket
+     */
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS - 1;
+        long sub = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exponent) - 1;
+    }
+
+    /**
+     * Forgets all recorded values. Values recorded at the same time may be partly kept
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        max.reset();
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The value below or at which the given percentage of recorded values lie, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * @return The duration with a unit that keeps it short, e.g. {@code 850ns}, {@code 1200us} or {@code 35ms}
+     */
+    public static String format(long nanos) {
+        if (nanos < 10_000) return nanos + "ns";
+        if (nanos < 10_000_000) return nanos / 1_000 + "us";
+        return nanos / 1_000_000 + "ms";
+    }
+}
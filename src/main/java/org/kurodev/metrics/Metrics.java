@@ -0,0 +1,156 @@
+package org.kurodev.metrics;
+
+import jdk.jfr.FlightRecorder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters and duration histograms of the engine, to see where time goes without attaching a profiler.
+ * <p>
+ * Recording is off unless the program is started with {@code -Dsudoku.metrics=true} or {@link #enable()} is called.
+ * Call sites check {@link #isEnabled()} before doing any work, so disabled metrics cost a single volatile read.
+ * Counters are {@link LongAdder}s, which spread contended updates over several cells,
+ * and durations go into {@link LatencyHistogram}s, so recording neither locks nor allocates once a metric exists.
+ * <p>
+ * Independent of this switch the engine emits the JFR events of this package while a flight recording is running,
+ * see {@link #isRecording()}.
+ */
+public final class Metrics {
+    public static final String PROPERTY = "sudoku.metrics";
+
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static volatile boolean enabled = Boolean.getBoolean(PROPERTY);
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static void disable() {
+        enabled = false;
+    }
+
+    /**
+     * Call sites only create JFR events if this is true. Loading the first event class initializes the flight recorder,
+     * which takes a few hundred milliseconds, and should not stall the first move of a player who is not recording.
+     *
+     * @return true once a flight recording was started in this JVM
+     */
+    public static boolean isRecording() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * @return The counter with the name, created on first use. Hot paths should keep the returned instance
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    /**
+     * @return The histogram with the name, created on first use. Hot paths should keep the returned instance
+     */
+    public static LatencyHistogram histogram(String name) {
+        return HISTOGRAMS.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    /**
+     * Adds to the counter if metrics are enabled
+     */
+    public static void count(String name, long amount) {
+        if (enabled) {
+            counter(name).add(amount);
+        }
+    }
+
+    /**
+     * Records the time passed since {@code startNanos} if metrics are enabled
+     *
+     * @param startNanos A value of {@link System#nanoTime()}
+     */
+    public static void recordSince(String name, long startNanos) {
+        if (enabled) {
+            histogram(name).record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Resets every metric to zero. Metrics keep existing, so instances kept by call sites stay valid
+     */
+    public static void reset() {
+        COUNTERS.values().forEach(LongAdder::reset);
+        HISTOGRAMS.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * @return The current values of all metrics, sorted by name. Updates made while taking it may be partly included
+     */
+    public static Snapshot snapshot() {
+        SortedMap<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        SortedMap<String, Summary> histograms = new TreeMap<>();
+        HISTOGRAMS.forEach((name, histogram) -> histograms.put(name, Summary.of(histogram)));
+        return new Snapshot(Collections.unmodifiableSortedMap(counters), Collections.unmodifiableSortedMap(histograms));
+    }
+
+    /**
+     * @param counters   The sum of every counter
+     * @param histograms The percentiles of every histogram
+     */
+    public record Snapshot(Map<String, Long> counters, Map<String, Summary> histograms) {
+        /**
+         * Writes one line per metric, {@code name value} for counters and
+         * {@code name count=N p50=.. p90=.. p99=.. max=..} for histograms
+         */
+        public void write(Appendable out) throws IOException {
+            for (Map.Entry<String, Long> counter : counters.entrySet()) {
+                out.append(counter.getKey()).append(' ').append(String.valueOf(counter.getValue())).append(System.lineSeparator());
+            }
+            for (Map.Entry<String, Summary> histogram : histograms.entrySet()) {
+                out.append(histogram.getKey()).append(' ').append(histogram.getValue().toString()).append(System.lineSeparator());
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            try {
+                write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Percentiles of a histogram in nanoseconds
+     */
+    public record Summary(long count, long p50, long p90, long p99, long max) {
+        static Summary of(LatencyHistogram histogram) {
+            return new Summary(histogram.count(), histogram.percentile(50), histogram.percentile(90),
+                    histogram.percentile(99), histogram.max());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d p50=%s p90=%s p99=%s max=%s", count, LatencyHistogram.format(p50),
+                    LatencyHistogram.format(p90), LatencyHistogram.format(p99), LatencyHistogram.format(max));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.kurodev.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of saving, loading or journaling a game
+ */
+@Name("org.kurodev.sudoku.Persistence")
+@Label("Game Persistence")
+@Category("Sudoku")
+public class PersistenceEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Records")
+    public int records;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
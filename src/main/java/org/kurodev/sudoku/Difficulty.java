@@ -32,4 +32,24 @@ public enum Difficulty {
     public int getMaxClues() {
         return maxClues;
     }
+
+    /**
+     * @param cells The amount of cells on the field
+     * @return The minimum clue count scaled to a field of the given size, same as {@link #getMinClues()} for 9x9
+     */
+    public int getMinClues(int cells) {
+        return scale(minClues, cells);
+    }
+
+    /**
+     * @param cells The amount of cells on the field
+     * @return The maximum clue count scaled to a field of the given size, same as {@link #getMaxClues()} for 9x9
+     */
+    public int getMaxClues(int cells) {
+        return scale(maxClues, cells);
+    }
+
+    private static int scale(int clues, int cells) {
+        return clues * cells / Grid.STANDARD.cells();
+    }
 }
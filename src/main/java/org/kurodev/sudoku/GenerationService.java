@@ -0,0 +1,102 @@
+package org.kurodev.sudoku;
+
+import org.kurodev.sudoku.gen.GenerationControl;
+import org.kurodev.sudoku.gen.SudokuGenerator;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Generates puzzles on demand on a shared, bounded set of background threads.
+ * <p>
+ * Only the latest request matters, e.g. the last click on "new game": submitting a request cancels the previous one.
+ * A cancelled request that has not started yet is dropped from the queue, and a running one stops at the next
+ * {@link GenerationControl#checkpoint()} of the generator, so outdated requests stop using CPU.
+ */
+public class GenerationService implements AutoCloseable {
+    private final SudokuGenerator generator;
+    private final ThreadPoolExecutor executor;
+    private Request current;
+
+    /**
+     * @param generator Generator shared by all threads, it must be thread-safe
+     * @param threads   The maximum amount of puzzles generated at the same time
+     * @param queueSize The maximum amount of requests waiting for a thread, further requests are rejected
+     */
+    public GenerationService(SudokuGenerator generator, int threads, int queueSize) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1 but was " + threads);
+        if (queueSize < 1) throw new IllegalArgumentException("Queue size must be at least 1 but was " + queueSize);
+        this.generator = generator;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread thread = new Thread(r, "Generator " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Generates a puzzle with a random seed, cancelling the previous request
+     *
+     * @param timeout  The time after which generation is cancelled, or null for no deadline
+     * @param progress Called on the generating thread with the progress between 0 and 1
+     * @return Completes with the puzzle, or with a {@link CancellationException} if it was superseded or timed out.
+     * Cancelling the future also stops generation
+     */
+    public synchronized CompletableFuture<SudokuWithSolution> submit(Difficulty difficulty, Duration timeout, DoubleConsumer progress) {
+        cancel();
+        GenerationControl control = new GenerationControl(timeout, progress);
+        CompletableFuture<SudokuWithSolution> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                control.cancel();
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+        Runnable task = () -> {
+            try {
+                control.checkpoint();
+                String seed = SudokuFactory.randomSeed();
+                result.complete(SudokuFactory.create(difficulty, Grid.STANDARD, seed, generator, control));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        };
+        current = new Request(task, result);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Cancels the latest request, if it is not done yet
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.result().cancel(false);
+            //frees the queue slot if it has not started yet
+            executor.remove(current.task());
+            current = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private record Request(Runnable task, CompletableFuture<SudokuWithSolution> result) {
+    }
+}
@@ -0,0 +1,174 @@
+package org.kurodev.sudoku;
+
+import org.kurodev.sudoku.gen.Coordinate;
+
+/**
+ * Precomputed lookup tables for a sudoku field that is stored as a flat array of cells.
+ * Cells are numbered row by row, so the cell at (x, y) has the index {@code y * size + x}.
+ * <p>
+ * Units are numbered rows first, then columns, then boxes:
+ * row r is unit {@code r}, column c is unit {@code size + c} and box b is unit {@code 2 * size + b}.
+ * Boxes are numbered row by row as well.
+ */
+public final class Grid {
+    /**
+     * The smallest and largest supported box size. Numbers up to 25 still fit into a byte per cell and an int mask per unit.
+     */
+    public static final int MIN_BOX_SIZE = 2, MAX_BOX_SIZE = 5;
+    private static final Grid[] GRIDS = new Grid[MAX_BOX_SIZE + 1];
+    /**
+     * The 9x9 field with 3x3 boxes
+     */
+    public static final Grid STANDARD = of(3);
+
+    private final int boxSize;
+    private final int size;
+    private final int cells;
+    private final int[] rowOf;
+    private final int[] colOf;
+    private final int[] boxOf;
+    private final int[][] units;
+    private final int[][] peers;
+
+    private Grid(int boxSize) {
+        this.boxSize = boxSize;
+        this.size = boxSize * boxSize;
+        this.cells = size * size;
+        rowOf = new int[cells];
+        colOf = new int[cells];
+        boxOf = new int[cells];
+        units = new int[3 * size][size];
+        int[] unitFill = new int[3 * size];
+        for (int cell = 0; cell < cells; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int box = row / boxSize * boxSize + col / boxSize;
+            rowOf[cell] = row;
+            colOf[cell] = col;
+            boxOf[cell] = box;
+            units[row][unitFill[row]++] = cell;
+            units[size + col][unitFill[size + col]++] = cell;
+            units[2 * size + box][unitFill[2 * size + box]++] = cell;
+        }
+        //every cell shares its row and column with (size - 1) cells each, plus the box cells not already in either
+        int peerCount = 2 * (size - 1) + (boxSize - 1) * (boxSize - 1);
+        peers = new int[cells][peerCount];
+        for (int cell = 0; cell < cells; cell++) {
+            int n = 0;
+            for (int other = 0; other < cells; other++) {
+                if (other != cell && (rowOf[other] == rowOf[cell] || colOf[other] == colOf[cell] || boxOf[other] == boxOf[cell])) {
+                    peers[cell][n++] = other;
+                }
+            }
+            assert n == peerCount : "Cell " + cell + " has " + n + " peers, expected " + peerCount;
+        }
+    }
+
+    /**
+     * Returns the shared tables for fields made of boxSize x boxSize boxes, for example 4 for a 16x16 field
+     *
+     * @throws IllegalArgumentException if the box size is not between {@link #MIN_BOX_SIZE} and {@link #MAX_BOX_SIZE}
+     */
+    public static Grid of(int boxSize) {
+        if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE)
+            throw new IllegalArgumentException("Box size must be between " + MIN_BOX_SIZE + " and " + MAX_BOX_SIZE + " but was " + boxSize);
+        synchronized (GRIDS) {
+            if (GRIDS[boxSize] == null) {
+                GRIDS[boxSize] = new Grid(boxSize);
+            }
+            return GRIDS[boxSize];
+        }
+    }
+
+    /**
+     * @return The width and height of a box
+     */
+    public int boxSize() {
+        return boxSize;
+    }
+
+    /**
+     * @return The width and height of the field, which is also the highest number that can be placed
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The total amount of cells on the field
+     */
+    public int cells() {
+        return cells;
+    }
+
+    public int indexOf(int x, int y) {
+        return y * size + x;
+    }
+
+    /**
+     * Unlike {@link #indexOf(int, int)} this checks the coordinate, so it never silently maps to another cell
+     *
+     * @throws IndexOutOfBoundsException if the coordinate is outside of the field
+     */
+    public int indexOf(Coordinate pos) {
+        if (pos.x() < 0 || pos.x() >= size || pos.y() < 0 || pos.y() >= size)
+            throw new IndexOutOfBoundsException("Coordinate " + pos + " out of bounds");
+        return indexOf(pos.x(), pos.y());
+    }
+
+    public Coordinate coordinateOf(int cell) {
+        return new Coordinate(colOf[cell], rowOf[cell]);
+    }
+
+    public int rowOf(int cell) {
+        return rowOf[cell];
+    }
+
+    public int colOf(int cell) {
+        return colOf[cell];
+    }
+
+    public int boxOf(int cell) {
+        return boxOf[cell];
+    }
+
+    /**
+     * @return The amount of units (rows, columns and boxes)
+     */
+    public int unitCount() {
+        return units.length;
+    }
+
+    /**
+     * @return The n-th cell of the given unit
+     */
+    public int unitCell(int unit, int n) {
+        return units[unit][n];
+    }
+
+    public int rowUnit(int cell) {
+        return rowOf[cell];
+    }
+
+    public int colUnit(int cell) {
+        return size + colOf[cell];
+    }
+
+    public int boxUnit(int cell) {
+        return 2 * size + boxOf[cell];
+    }
+
+    /**
+     * @return The amount of cells sharing a row, column or box with any given cell
+     */
+    public int peerCount() {
+        return peers[0].length;
+    }
+
+    /**
+     * @return The n-th cell that shares a row, column or box with the given cell
+     */
+    public int peer(int cell, int n) {
+        return peers[cell][n];
+    }
+}
@@ -0,0 +1,217 @@
+package org.kurodev.sudoku;
+
+import org.kurodev.sudoku.io.SudokuCodec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Undo and redo log of a game. Every move is stored as a single int holding the cell, the number it had before
+ * and the number it has after, so undoing or redoing a move only touches that one cell.
+ * <p>
+ * The log keeps at most {@link #capacity()} moves in a ring buffer, the oldest moves are dropped once it is full.
+ * The buffer starts empty and grows with the moves up to the capacity, so games that are never played cost next to nothing.
+ * Recording a move after undoing discards the undone moves, like in every editor.
+ */
+public final class MoveHistory {
+    public static final int DEFAULT_CAPACITY = 10_000;
+    //the amount of moves is stored as unsigned short
+    public static final int MAX_CAPACITY = 0xFFFF;
+    private static final int INITIAL_LENGTH = 16;
+    private static final int[] NO_MOVES = new int[0];
+
+    private final int capacity;
+    private int[] moves = NO_MOVES;
+    //index of the oldest move in the ring buffer
+    private int start;
+    //amount of recorded moves, including the ones that were undone
+    private int size;
+    //amount of moves that are currently applied
+    private int position;
+
+    public MoveHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MoveHistory(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + " but was " + capacity);
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The move packed into a single int
+     */
+    public static int pack(int cell, int oldNum, int newNum) {
+        return cell << 16 | oldNum << 8 | newNum;
+    }
+
+    public static int cellOf(int move) {
+        return move >>> 16;
+    }
+
+    public static int oldNumOf(int move) {
+        return move >>> 8 & 0xFF;
+    }
+
+    public static int newNumOf(int move) {
+        return move & 0xFF;
+    }
+
+    /**
+     * Records that the number of a cell was changed. Moves that do not change the cell are ignored.
+     */
+    public void record(int cell, int oldNum, int newNum) {
+        if (oldNum == newNum) return;
+        //a new move makes the undone ones unreachable
+        size = position;
+        if (size == capacity) {
+            start = (start + 1) % moves.length;
+            size--;
+            position--;
+        } else if (size == moves.length) {
+            grow(size + 1);
+        }
+        moves[(start + size) % moves.length] = pack(cell, oldNum, newNum);
+        size++;
+        position++;
+    }
+
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    public boolean canRedo() {
+        return position < size;
+    }
+
+    /**
+     * Reverts the last applied move on the game
+     *
+     * @return The cell that was changed, or -1 if there is nothing to undo
+     */
+    public int undo(Sudoku game) {
+        if (!canUndo()) return -1;
+        int move = get(--position);
+        game.setNum(oldNumOf(move), cellOf(move));
+        return cellOf(move);
+    }
+
+    /**
+     * Applies the last undone move to the game again
+     *
+     * @return The cell that was changed, or -1 if there is nothing to redo
+     */
+    public int redo(Sudoku game) {
+        if (!canRedo()) return -1;
+        int move = get(position++);
+        game.setNum(newNumOf(move), cellOf(move));
+        return cellOf(move);
+    }
+
+    /**
+     * @param index 0 for the oldest recorded move
+     * @return The packed move
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return moves[(start + index) % moves.length];
+    }
+
+    /**
+     * @return The amount of recorded moves, including the ones that were undone
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The amount of moves that are currently applied, the moves from here to {@link #size()} can be redone
+     */
+    public int position() {
+        return position;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Enlarges the ring buffer to hold at least the given amount of moves, moving the oldest move to the front
+     */
+    private void grow(int needed) {
+        int length = Math.min(capacity, Math.max(needed, Math.max(INITIAL_LENGTH, moves.length * 2)));
+        int[] grown = new int[length];
+        for (int i = 0; i < size; i++) {
+            grown[i] = moves[(start + i) % moves.length];
+        }
+        moves = grown;
+        start = 0;
+    }
+
+    public void clear() {
+        start = 0;
+        size = 0;
+        position = 0;
+    }
+
+    /**
+     * Replaces the log with the given moves, keeping only the newest ones if there are more than fit
+     *
+     * @param packed   The packed moves, oldest first
+     * @param position The amount of these moves that are applied
+     */
+    public void restore(int[] packed, int position) {
+        if (position < 0 || position > packed.length)
+            throw new IllegalArgumentException("Position " + position + " is outside of the " + packed.length + " moves");
+        int dropped = Math.max(0, packed.length - capacity);
+        clear();
+        if (moves.length < packed.length - dropped) {
+            grow(packed.length - dropped);
+        }
+        for (int i = dropped; i < packed.length; i++) {
+            moves[size++] = packed[i];
+        }
+        this.position = Math.max(0, position - dropped);
+    }
+
+    /**
+     * Writes the log in the compact format of {@link SudokuCodec#encode(MoveHistory, Grid, ByteBuffer)}
+     *
+     * @param grid The size of the game the moves belong to
+     */
+    public void write(OutputStream out, Grid grid) throws IOException {
+        byte[] buf = new byte[SudokuCodec.historySize(this, grid)];
+        SudokuCodec.encode(this, grid, ByteBuffer.wrap(buf));
+        out.write(buf);
+    }
+
+    /**
+     * Replaces the log with one read from the stream. A stream that already ended results in an empty log,
+     * so save files written before there was a history can still be read.
+     *
+     * @param grid The size of the game the moves belong to
+     */
+    public void read(InputStream in, Grid grid) throws IOException {
+        byte[] header = in.readNBytes(SudokuCodec.HISTORY_HEADER_SIZE);
+        if (header.length == 0) {
+            clear();
+            return;
+        }
+        if (header.length != SudokuCodec.HISTORY_HEADER_SIZE) throw new EOFException("History header is truncated");
+        int count = ByteBuffer.wrap(header).getShort() & 0xFFFF;
+        byte[] body = in.readNBytes(count * SudokuCodec.moveSize(grid));
+        ByteBuffer buf = ByteBuffer.allocate(header.length + body.length).put(header).put(body).flip();
+        try {
+            SudokuCodec.decode(buf, grid, this);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("History is truncated");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid history", e);
+        }
+    }
+}
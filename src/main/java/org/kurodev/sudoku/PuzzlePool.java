@@ -0,0 +1,192 @@
+package org.kurodev.sudoku;
+
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.SudokuGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps generated puzzles ready for every {@link Difficulty}, so starting a game does not have to wait for the generator.
+ * <p>
+ * Whenever the amount of ready puzzles of a difficulty drops below the low watermark,
+ * a background task generates new ones until the high watermark is reached.
+ * If the pool is empty when a puzzle is requested, it is generated on the calling thread instead.
+ * <p>
+ * If a storage file is given, the ready puzzles are written to it on {@link #close()} and read back on construction.
+ */
+public class PuzzlePool implements AutoCloseable {
+    private final SudokuGenerator generator;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Path storage;
+    private final Map<Difficulty, BlockingQueue<SudokuWithSolution>> pools = new EnumMap<>(Difficulty.class);
+    private final Map<Difficulty, AtomicBoolean> refilling = new EnumMap<>(Difficulty.class);
+    private final ExecutorService executor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a pool without storage that refills on a single background thread.
+     */
+    public PuzzlePool(int lowWatermark, int highWatermark) {
+        this(new BacktrackingSudokuGenerator(), lowWatermark, highWatermark, 1, null);
+    }
+
+    /**
+     * @param generator     Generator shared by all refill threads, it must be thread-safe
+     * @param lowWatermark  A refill starts once fewer puzzles than this are ready
+     * @param highWatermark The amount of puzzles kept ready per difficulty
+     * @param threads       The maximum amount of background threads generating puzzles
+     * @param storage       File to persist ready puzzles in, or null to not persist them
+     */
+    public PuzzlePool(SudokuGenerator generator, int lowWatermark, int highWatermark, int threads, Path storage) {
+        if (lowWatermark < 1 || lowWatermark > highWatermark)
+            throw new IllegalArgumentException("Invalid watermarks low=" + lowWatermark + " high=" + highWatermark);
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1 but was " + threads);
+        this.generator = generator;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.storage = storage;
+        for (Difficulty difficulty : Difficulty.values()) {
+            pools.put(difficulty, new ArrayBlockingQueue<>(highWatermark));
+            refilling.put(difficulty, new AtomicBoolean());
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        //there is at most one refill task per difficulty, so the queue never has to reject anything
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Difficulty.values().length),
+                r -> {
+                    Thread thread = new Thread(r, "Puzzle Pool " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        ((ThreadPoolExecutor) executor).allowCoreThreadTimeOut(true);
+        if (storage != null) {
+            restore();
+        }
+    }
+
+    /**
+     * Takes a ready puzzle, or generates one on the calling thread if none is available.
+     * Either way a refill is started if the pool runs low.
+     */
+    public SudokuWithSolution take(Difficulty difficulty) {
+        SudokuWithSolution out = poll(difficulty);
+        if (out == null) {
+            out = SudokuFactory.create(difficulty, generator);
+        }
+        return out;
+    }
+
+    /**
+     * Takes a ready puzzle and starts a refill if the pool runs low
+     *
+     * @return The puzzle, or null if none is ready
+     */
+    public SudokuWithSolution poll(Difficulty difficulty) {
+        SudokuWithSolution out = pools.get(difficulty).poll();
+        warmUp(difficulty);
+        return out;
+    }
+
+    /**
+     * Starts generating puzzles of the given difficulty in the background if fewer than the low watermark are ready.
+     */
+    public void warmUp(Difficulty difficulty) {
+        if (closed || pools.get(difficulty).size() >= lowWatermark) {
+            return;
+        }
+        AtomicBoolean flag = refilling.get(difficulty);
+        if (flag.compareAndSet(false, true)) {
+            executor.execute(() -> refill(difficulty, flag));
+        }
+    }
+
+    private void refill(Difficulty difficulty, AtomicBoolean flag) {
+        BlockingQueue<SudokuWithSolution> pool = pools.get(difficulty);
+        try {
+            while (!closed && pool.remainingCapacity() > 0) {
+                pool.offer(SudokuFactory.create(difficulty, generator));
+            }
+        } finally {
+            flag.set(false);
+        }
+    }
+
+    /**
+     * @return The amount of puzzles of the given difficulty that are ready to be taken
+     */
+    public int size(Difficulty difficulty) {
+        return pools.get(difficulty).size();
+    }
+
+    /**
+     * Stops refilling and writes the ready puzzles to the storage file, if there is one.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+        if (storage != null) {
+            persist();
+        }
+    }
+
+    private void persist() {
+        try {
+            Path temp = storage.resolveSibling(storage.getFileName() + ".tmp");
+            try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                for (Difficulty difficulty : Difficulty.values()) {
+                    List<SudokuWithSolution> ready = new ArrayList<>(pools.get(difficulty));
+                    out.writeByte(difficulty.ordinal());
+                    out.writeInt(ready.size());
+                    for (SudokuWithSolution puzzle : ready) {
+                        puzzle.save(out);
+                    }
+                }
+            }
+            Files.move(temp, storage, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to persist puzzle pool");
+            e.printStackTrace();
+        }
+    }
+
+    private void restore() {
+        if (!Files.exists(storage)) {
+            return;
+        }
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(storage)))) {
+            for (int i = 0; i < Difficulty.values().length; i++) {
+                Difficulty difficulty = Difficulty.valueOf(in.readUnsignedByte());
+                int count = in.readInt();
+                BlockingQueue<SudokuWithSolution> pool = pools.get(difficulty);
+                for (int j = 0; j < count; j++) {
+                    pool.offer(SudokuWithSolution.load(in));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to restore puzzle pool");
+            e.printStackTrace();
+        }
+    }
+}
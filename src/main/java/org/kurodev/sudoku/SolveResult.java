@@ -0,0 +1,23 @@
+package org.kurodev.sudoku;
+
+/**
+ * The outcome of a {@link SudokuSolver} run.
+ *
+ * @param solution  The first solution found, or null if the puzzle has none
+ * @param solutions The amount of solutions found, capped at the limit passed to the solver
+ * @param nodes     The amount of search nodes the solver visited
+ * @param nanos     The wall time the solver spent on this puzzle
+ */
+public record SolveResult(Sudoku solution, int solutions, long nodes, long nanos) {
+
+    public boolean isSolved() {
+        return solutions > 0;
+    }
+
+    /**
+     * Only meaningful if the solver was allowed to search for at least two solutions
+     */
+    public boolean isUnique() {
+        return solutions == 1;
+    }
+}
@@ -1,28 +1,100 @@
 package org.kurodev.sudoku;
 
 import org.kurodev.sudoku.gen.Coordinate;
+import org.kurodev.sudoku.io.SudokuCodec;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.IntConsumer;
 
 public class Sudoku {
+    /**
+     * The size of a standard sudoku, see {@link #getSize()} for the size of a specific instance
+     */
     public static final int FIELD_SIZE = 9;
-
-    private final int[][] field = new int[FIELD_SIZE][FIELD_SIZE];
+    /**
+     * Bitmask with the bits 1 to 9 set, one bit for every number that can be placed on a standard field
+     *
+     * @see #getAllNumbers()
+     */
+    public static final int ALL_NUMBERS = ((1 << (FIELD_SIZE + 1)) - 1) & ~1;
+
+    private final Grid grid;
+    private final int size;
+    private final int allNumbers;
+    //the field stored row by row, see Grid for the cell numbering
+    private final byte[] cells;
+    //how often each number occurs in every unit. Index is [unit * (size + 1) + num]
+    private final byte[] unitCounts;
+    //bit n is set if the number n occurs at least once in the unit
+    private final int[] unitMasks;
+    //amount of peers holding the same number as the cell, always 0 for empty cells.
+    //At most the peer count, which is 64 on the biggest field, so it fits a byte
+    private final byte[] conflicts;
+    //bitset of cells whose number or conflict status changed since the last call to forEachDirtyCell
+    private final long[] dirty;
+    private int filledCells;
+    private int conflictingCells;
 
     Sudoku() {
+        this(Grid.STANDARD);
+    }
 
+    Sudoku(Grid grid) {
+        this.grid = grid;
+        this.size = grid.size();
+        this.allNumbers = ((1 << (size + 1)) - 1) & ~1;
+        cells = new byte[grid.cells()];
+        unitCounts = new byte[grid.unitCount() * (size + 1)];
+        unitMasks = new int[grid.unitCount()];
+        assert grid.peerCount() <= Byte.MAX_VALUE : "Conflict counts of a " + size + "x" + size + " field do not fit a byte";
+        conflicts = new byte[grid.cells()];
+        dirty = new long[(grid.cells() + 63) / 64];
     }
 
+    /**
+     * @return An empty sudoku of the given size
+     */
+    public static Sudoku ofSize(Grid grid) {
+        return new Sudoku(grid);
+    }
+
+    /**
+     * Reads a sudoku of any size that was stored with {@link #writeState(OutputStream)}
+     */
     public static Sudoku ofState(InputStream in) throws IOException {
-        var out = new Sudoku();
-        out.readState(in);
-        return out;
+        try {
+            return SudokuCodec.decode(readStateBytes(in));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid sudoku state", e);
+        }
+    }
+
+    /**
+     * @return The lookup tables describing the cell layout of this sudoku
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return The width and height of the field, which is also the highest number that can be placed
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Bitmask with the bits 1 to {@link #getSize()} set
+     */
+    public int getAllNumbers() {
+        return allNumbers;
     }
 
     @Override
@@ -30,45 +102,175 @@ public class Sudoku {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Sudoku sudoku = (Sudoku) o;
-        return Arrays.deepEquals(field, sudoku.field);
+        return grid == sudoku.grid && Arrays.equals(cells, sudoku.cells);
     }
 
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(field);
+        return Arrays.hashCode(cells);
     }
 
     public void setNum(int num, Coordinate pos) {
+        setNum(num, grid.indexOf(pos));
+    }
+
+    /**
+     * Places a number on the cell with the given index
+     *
+     * @param num  The number to place or 0 to clear the cell
+     * @param cell The cell index, see {@link Grid#indexOf(int, int)}
+     */
+    public void setNum(int num, int cell) {
         if (num < 0) throw new IllegalArgumentException("Num must be positive but was " + num);
-        if (pos.y() >= FIELD_SIZE || pos.x() >= FIELD_SIZE)
-            throw new IndexOutOfBoundsException("Coordinate " + pos + " out of bounds");
+        if (num > size) throw new IllegalArgumentException("Num must not exceed " + size + " but was " + num);
+
+        int old = cells[cell];
+        if (old == num) return;
+        boolean wasConflicting = conflicts[cell] != 0;
+        if (old != 0) {
+            removeFromUnits(old, cell);
+            filledCells--;
+            if (hasDuplicateAround(old, cell, 0)) {
+                updatePeerConflicts(old, cell, -1);
+            }
+        }
+        cells[cell] = (byte) num;
+        if (num != 0) {
+            addToUnits(num, cell);
+            filledCells++;
+            if (hasDuplicateAround(num, cell, 1)) {
+                updatePeerConflicts(num, cell, 1);
+            }
+        }
+        markDirty(cell);
+        if (wasConflicting != (conflicts[cell] != 0)) {
+            conflictingCells += wasConflicting ? -1 : 1;
+        }
+    }
+
+    /**
+     * Checks whether any unit of the cell holds the number more often than the cell itself accounts for
+     */
+    private boolean hasDuplicateAround(int num, int cell, int self) {
+        return unitCounts[grid.rowUnit(cell) * (size + 1) + num] > self
+                || unitCounts[grid.colUnit(cell) * (size + 1) + num] > self
+                || unitCounts[grid.boxUnit(cell) * (size + 1) + num] > self;
+    }
+
+    /**
+     * Adds delta to the conflict count of every peer holding the number, and once per such peer to the cell itself
+     */
+    private void updatePeerConflicts(int num, int cell, int delta) {
+        for (int i = 0; i < grid.peerCount(); i++) {
+            int peer = grid.peer(cell, i);
+            if (cells[peer] != num) continue;
+            boolean wasConflicting = conflicts[peer] != 0;
+            conflicts[peer] = (byte) (conflicts[peer] + delta);
+            conflicts[cell] = (byte) (conflicts[cell] + delta);
+            assert conflicts[peer] >= 0 && conflicts[cell] >= 0 : "Negative conflict count around " + cell;
+            if (wasConflicting != (conflicts[peer] != 0)) {
+                conflictingCells += wasConflicting ? -1 : 1;
+                markDirty(peer);
+            }
+        }
+    }
+
+    private void markDirty(int cell) {
+        dirty[cell >>> 6] |= 1L << cell;
+    }
+
+    private void addToUnits(int num, int cell) {
+        int bit = 1 << num;
+        int row = grid.rowUnit(cell), col = grid.colUnit(cell), box = grid.boxUnit(cell);
+        if (unitCounts[row * (size + 1) + num]++ == 0) unitMasks[row] |= bit;
+        if (unitCounts[col * (size + 1) + num]++ == 0) unitMasks[col] |= bit;
+        if (unitCounts[box * (size + 1) + num]++ == 0) unitMasks[box] |= bit;
+    }
 
-        field[pos.y()][pos.x()] = num;
+    private void removeFromUnits(int num, int cell) {
+        int bit = 1 << num;
+        int row = grid.rowUnit(cell), col = grid.colUnit(cell), box = grid.boxUnit(cell);
+        if (--unitCounts[row * (size + 1) + num] == 0) unitMasks[row] &= ~bit;
+        if (--unitCounts[col * (size + 1) + num] == 0) unitMasks[col] &= ~bit;
+        if (--unitCounts[box * (size + 1) + num] == 0) unitMasks[box] &= ~bit;
     }
 
     public int getNum(Coordinate pos) {
-        return field[pos.y()][pos.x()];
+        return cells[grid.indexOf(pos)];
+    }
+
+    public int getNum(int cell) {
+        return cells[cell];
     }
 
     public boolean isNumberValid(Coordinate pos) {
         return isNumberValid(getNum(pos), pos);
     }
 
+    /**
+     * Checks whether the given number could be placed at the position without clashing with any other cell
+     * in the same row, column or box. The current content of the position itself is ignored.
+     */
     public boolean isNumberValid(int num, Coordinate pos) {
-        if (num == 0) return false;
-        var list = getLinePos(pos, false);
-        list.addAll(getGroupPos(pos, false));
+        return isNumberValid(num, grid.indexOf(pos));
+    }
 
-        return list.stream()
-                .map(this::getNum)
-                .noneMatch(integer -> integer == num);
+    /**
+     * @see #isNumberValid(int, Coordinate)
+     */
+    public boolean isNumberValid(int num, int cell) {
+        if (num <= 0 || num > size) return false;
+        //the cell itself is part of all three units, so it must not count as a clash
+        int self = cells[cell] == num ? 1 : 0;
+        return unitCounts[grid.rowUnit(cell) * (size + 1) + num] == self
+                && unitCounts[grid.colUnit(cell) * (size + 1) + num] == self
+                && unitCounts[grid.boxUnit(cell) * (size + 1) + num] == self;
+    }
+
+    /**
+     * Retrieves all numbers that could be placed at the given position without clashing with another cell.
+     *
+     * @return A bitmask where bit n is set if the number n is a candidate for this position
+     * @see #getAllNumbers()
+     */
+    public int getCandidates(Coordinate pos) {
+        return getCandidates(grid.indexOf(pos));
+    }
+
+    /**
+     * @see #getCandidates(Coordinate)
+     */
+    public int getCandidates(int cell) {
+        int used = unitMasks[grid.rowUnit(cell)] | unitMasks[grid.colUnit(cell)] | unitMasks[grid.boxUnit(cell)];
+        int own = cells[cell];
+        if (own != 0 && isNumberValid(own, cell)) {
+            //the number is only "used" by the cell itself
+            used &= ~(1 << own);
+        }
+        return allNumbers & ~used;
+    }
+
+    /**
+     * Calls the action with the index of every cell that shares a row, column or box with the given cell.
+     */
+    public void forEachPeer(int cell, IntConsumer action) {
+        for (int i = 0; i < grid.peerCount(); i++) {
+            action.accept(grid.peer(cell, i));
+        }
+    }
+
+    private Set<Integer> toSet(int mask) {
+        Set<Integer> res = new HashSet<>();
+        for (int num = 1; num <= size; num++) {
+            if ((mask & (1 << num)) != 0) {
+                res.add(num);
+            }
+        }
+        return res;
     }
 
     public Set<Integer> getLineNums(Coordinate coordinate) {
-        return getLinePos(coordinate).stream()
-                .map(this::getNum)
-                .filter(integer -> integer != 0)
-                .collect(Collectors.toSet());
+        return toSet(unitMasks[coordinate.y()] | unitMasks[size + coordinate.x()]);
     }
 
     public Set<Coordinate> getLinePos(Coordinate coordinate) {
@@ -76,39 +278,24 @@ public class Sudoku {
     }
 
     public Set<Coordinate> getLinePos(Coordinate coordinate, boolean includeParamCoord) {
+        int cell = grid.indexOf(coordinate);
         Set<Coordinate> res = new HashSet<>();
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            var a = new Coordinate(i, coordinate.y());
-            var b = new Coordinate(coordinate.x(), i);
-            if (includeParamCoord || !a.equals(coordinate))
-                res.add(a);
-            if (includeParamCoord || !b.equals(coordinate))
-                res.add(b);
-        }
+        addUnit(res, grid.rowUnit(cell), includeParamCoord ? -1 : cell);
+        addUnit(res, grid.colUnit(cell), includeParamCoord ? -1 : cell);
         return res;
     }
 
-    private int getSubgroupCenter(int i) {
-        int[] numbers = {1, 4, 7};
-        int closest = numbers[0];
-        int minDiff = Math.abs(numbers[0] - i);
-
-        for (int num : numbers) {
-            int diff = Math.abs(num - i);
-            if (diff < minDiff) {
-                minDiff = diff;
-                closest = num;
+    private void addUnit(Set<Coordinate> res, int unit, int skippedCell) {
+        for (int i = 0; i < size; i++) {
+            int cell = grid.unitCell(unit, i);
+            if (cell != skippedCell) {
+                res.add(grid.coordinateOf(cell));
             }
         }
-
-        return closest;
     }
 
     public Set<Integer> getGroupNums(Coordinate coordinate) {
-        return getGroupPos(coordinate).stream()
-                .map(this::getNum)
-                .filter(integer -> integer != 0)
-                .collect(Collectors.toSet());
+        return toSet(unitMasks[grid.boxUnit(grid.indexOf(coordinate))]);
     }
 
     public Set<Coordinate> getGroupPos(Coordinate coordinate) {
@@ -116,36 +303,34 @@ public class Sudoku {
     }
 
     public Set<Coordinate> getGroupPos(Coordinate coordinate, boolean includeParamCoord) {
+        int cell = grid.indexOf(coordinate);
         Set<Coordinate> res = new HashSet<>();
-        // Find top-left of subgroup
-        int baseX = coordinate.x() / 3 * 3;
-        int baseY = coordinate.y() / 3 * 3;
-
-        for (int y = baseY; y < baseY + 3; y++) {
-            for (int x = baseX; x < baseX + 3; x++) {
-                if (!includeParamCoord && x == coordinate.x() && y == coordinate.y()) {
-                    // Skip adding the original coordinate if includeParam is false
-                    continue;
-                }
-                res.add(new Coordinate(x, y));
-            }
-        }
-
+        addUnit(res, grid.boxUnit(cell), includeParamCoord ? -1 : cell);
         return res;
     }
 
     @Override
     public String toString() {
+        int boxSize = grid.boxSize();
+        int cellWidth = String.valueOf(size).length();
+        String boxLine = "-".repeat(boxSize * (cellWidth + 1));
+        StringBuilder separator = new StringBuilder(boxLine);
+        for (int box = 1; box < boxSize; box++) {
+            separator.append(box == boxSize - 1 ? "+" : "+-").append(boxLine);
+        }
+        separator.append("\n");
         StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < FIELD_SIZE; i++) {
-            if (i % 3 == 0 && i != 0) {
-                sb.append("------+-------+------\n");
+        for (int i = 0; i < size; i++) {
+            if (i % boxSize == 0 && i != 0) {
+                sb.append(separator);
             }
-            for (int j = 0; j < FIELD_SIZE; j++) {
-                if (j % 3 == 0 && j != 0) {
+            for (int j = 0; j < size; j++) {
+                if (j % boxSize == 0 && j != 0) {
                     sb.append("| ");
                 }
-                sb.append(field[i][j] == 0 ? "_ " : field[i][j] + " ");
+                int num = cells[grid.indexOf(j, i)];
+                String text = num == 0 ? "_" : String.valueOf(num);
+                sb.append(" ".repeat(cellWidth - text.length())).append(text).append(" ");
             }
             sb.append("\n");
         }
@@ -156,92 +341,140 @@ public class Sudoku {
         setNum(0, pos);
     }
 
+    public void clearNum(int cell) {
+        setNum(0, cell);
+    }
+
+    /**
+     * Checks whether the sudoku is completely filled without any clashes.
+     *
+     * @see #isSolved()
+     */
     public boolean isValidSudoku() {
-        for (int y = 0; y < FIELD_SIZE; y++) {
-            for (int x = 0; x < FIELD_SIZE; x++) {
-                var pos = new Coordinate(x, y);
-                int num = getNum(pos);
-                if (!isNumberValid(num, pos)) {
-                    return false;
-                }
+        return isSolved();
+    }
+
+    /**
+     * Checks whether the sudoku is completely filled without any clashes.
+     * The counters this is based on are kept up to date by {@link #setNum(int, int)}, so this is a constant time check.
+     */
+    public boolean isSolved() {
+        return filledCells == cells.length && conflictingCells == 0;
+    }
+
+    /**
+     * @return The amount of cells that hold a number
+     */
+    public int getFilledCount() {
+        return filledCells;
+    }
+
+    /**
+     * @return The amount of cells that hold the same number as at least one of their peers
+     */
+    public int getConflictCount() {
+        return conflictingCells;
+    }
+
+    /**
+     * @return true if the cell holds a number that also occurs in its row, column or box
+     */
+    public boolean hasConflict(Coordinate pos) {
+        return hasConflict(grid.indexOf(pos));
+    }
+
+    /**
+     * @see #hasConflict(Coordinate)
+     */
+    public boolean hasConflict(int cell) {
+        return conflicts[cell] != 0;
+    }
+
+    /**
+     * Calls the action with every cell whose number or conflict status changed since the last call,
+     * then marks all cells as clean. Meant for views that only want to redraw what changed.
+     */
+    public void forEachDirtyCell(IntConsumer action) {
+        for (int word = 0; word < dirty.length; word++) {
+            long bits = dirty[word];
+            dirty[word] = 0;
+            while (bits != 0) {
+                action.accept(word * 64 + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
             }
         }
-        return true;
     }
 
     /**
      * Creates a deep copy of this object and returns it
      */
     public Sudoku copyState() {
-        Sudoku out = new Sudoku();
-        for (int i = 0; i < this.field.length; i++) {
-            System.arraycopy(this.field[i], 0, out.field[i], 0, this.field[i].length);
-        }
+        Sudoku out = new Sudoku(grid);
+        out.copyState(this);
         return out;
     }
 
     /**
      * Clones the field from the other Sudoku into this one
      *
-     * @param other The sudoku to copy
+     * @param other The sudoku to copy, it must have the same size as this one
      */
     public void copyState(Sudoku other) {
-        for (int i = 0; i < this.field.length; i++) {
-            System.arraycopy(other.field[i], 0, this.field[i], 0, other.field[i].length);
+        if (other.grid != grid) throw new IllegalArgumentException("Cannot copy a sudoku of size " + other.size + " into one of size " + size);
+        System.arraycopy(other.cells, 0, this.cells, 0, cells.length);
+        System.arraycopy(other.unitCounts, 0, this.unitCounts, 0, unitCounts.length);
+        System.arraycopy(other.unitMasks, 0, this.unitMasks, 0, unitMasks.length);
+        System.arraycopy(other.conflicts, 0, this.conflicts, 0, conflicts.length);
+        this.filledCells = other.filledCells;
+        this.conflictingCells = other.conflictingCells;
+        //any cell might have changed
+        for (int cell = 0; cell < cells.length; cell++) {
+            markDirty(cell);
         }
     }
 
     /**
-     * Stores the sudoku field in 4-bit blocks
+     * Stores the sudoku field in the format of {@link SudokuCodec}
      */
     public void writeState(OutputStream stream) throws IOException {
-        //write all the first numbers first
-        stream.write(getNum(new Coordinate(0, 0)));
-        for (int y = 1; y < FIELD_SIZE; y++) {
-            int firstNum = getNum(new Coordinate(0, y++));
-            firstNum = firstNum << 4;
-            firstNum += getNum(new Coordinate(0, y));
-            stream.write(firstNum);
-        }
+        byte[] state = new byte[getStateSize()];
+        SudokuCodec.encode(this, ByteBuffer.wrap(state));
+        stream.write(state);
+    }
 
-        for (int y = 0; y < FIELD_SIZE; y++) {
-            for (int x = 1; x < FIELD_SIZE; x++) {
-                int aByte = getNum(new Coordinate(x++, y));
-                aByte = aByte << 4;
-                int num2 = getNum(new Coordinate(x, y));
-                aByte += num2;
-                stream.write(aByte);
-            }
-        }
+    /**
+     * @return The amount of bytes {@link #writeState(OutputStream)} produces for this sudoku
+     */
+    public int getStateSize() {
+        return SudokuCodec.stateSize(grid);
     }
 
+    /**
+     * Restores a state written by {@link #writeState(OutputStream)}. The state must be of the same size as this sudoku
+     */
     public void readState(InputStream in) throws IOException {
-        final int halfCeil = (FIELD_SIZE / 2) + 1;
-        byte[] buf = new byte[41];//the amount of bytes necessary to store one sudoku
-        int read = in.read(buf);
-        assert read == buf.length : "Read was: " + read + " Expected:" + buf.length;
-        //set all the first numbers
-        int tempY = 1;
-        setNum(buf[0], new Coordinate(0, 0)); //first number is just a byte
-        for (int i = 1; i < halfCeil; i++) {
-            byte num = buf[i];
-            int a = (num >> 4) & 0x0F;
-            int b = num & 0xf;
-            setNum(a, new Coordinate(0, tempY++));
-            setNum(b, new Coordinate(0, tempY++));
-        }
-        // Set the remaining numbers
-        for (int i = halfCeil; i < buf.length; i++) {
-            int y = (i - halfCeil) / ((FIELD_SIZE - 1) / 2);
-            int x = 1 + 2 * ((i - halfCeil) % ((FIELD_SIZE - 1) / 2));
-
-            byte num = buf[i];
-            int a = (num >> 4) & 0x0F;
-            int b = num & 0xf;
-            setNum(a, new Coordinate(x, y)); // Upper 4 bits
-            x++;
-            setNum(b, new Coordinate(x, y)); // Lower 4 bits
+        ByteBuffer state = readStateBytes(in);
+        try {
+            SudokuCodec.decode(state, this);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid sudoku state", e);
         }
+    }
 
+    private static ByteBuffer readStateBytes(InputStream in) throws IOException {
+        int first = in.read();
+        if (first < 0) throw new EOFException("No sudoku state left in stream");
+        int size;
+        try {
+            size = SudokuCodec.stateSize(SudokuCodec.gridOf((byte) first));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid sudoku state", e);
+        }
+        byte[] buf = new byte[size];
+        buf[0] = (byte) first;
+        //a single read may return fewer bytes than requested
+        int read = 1 + in.readNBytes(buf, 1, size - 1);
+        if (read != size) throw new EOFException("Read was: " + read + " Expected:" + size);
+        return ByteBuffer.wrap(buf);
     }
 }
@@ -1,20 +1,28 @@
 package org.kurodev.sudoku;
 
 import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.GenerationControl;
 import org.kurodev.sudoku.gen.SudokuGenerator;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.UUID;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public class SudokuFactory {
+    //enough puzzles per thread that the threads rarely wait for the slowest puzzle of a window
+    private static final int WINDOW_PER_THREAD = 4;
 
     public static SudokuWithSolution create(Difficulty difficulty, SudokuGenerator generator) {
-        return create(difficulty, UUID.randomUUID().toString(), generator);
+        return create(difficulty, randomSeed(), generator);
     }
 
     public static SudokuWithSolution create(Difficulty difficulty) {
-        return create(difficulty, UUID.randomUUID().toString(), new BacktrackingSudokuGenerator());
+        return create(difficulty, randomSeed(), new BacktrackingSudokuGenerator());
     }
 
     public static SudokuWithSolution create(Difficulty difficulty, String seed) {
@@ -22,11 +30,118 @@ public class SudokuFactory {
     }
 
     public static SudokuWithSolution create(Difficulty difficulty, String seed, SudokuGenerator generator) {
-        var out = new SudokuWithSolution(new Sudoku(), new Sudoku(), difficulty);
+        return create(difficulty, Grid.STANDARD, seed, generator);
+    }
+
+    /**
+     * Creates a puzzle on a field of any supported size, for example {@code Grid.of(4)} for 16x16.
+     * The clue counts of the difficulty are scaled to the amount of cells.
+     */
+    public static SudokuWithSolution create(Difficulty difficulty, Grid grid, String seed, SudokuGenerator generator) {
+        var out = new SudokuWithSolution(new Sudoku(grid), new Sudoku(grid), difficulty);
         generator.generate(out, seed);
         return out;
     }
 
+    /**
+     * Creates a puzzle that can be cancelled and reports its progress
+     *
+     * @throws java.util.concurrent.CancellationException if the control was cancelled or its deadline passed
+     * @see SudokuGenerator#generate(SudokuWithSolution, String, GenerationControl)
+     */
+    public static SudokuWithSolution create(Difficulty difficulty, Grid grid, String seed, SudokuGenerator generator, GenerationControl control) {
+        var out = new SudokuWithSolution(new Sudoku(grid), new Sudoku(grid), difficulty);
+        generator.generate(out, seed, control);
+        return out;
+    }
+
+    /**
+     * Generates several puzzles in parallel on the common fork/join pool.
+     *
+     * @see #createBatch(Difficulty, int, String, SudokuGenerator, ForkJoinPool)
+     */
+    public static List<SudokuWithSolution> createBatch(Difficulty difficulty, int count, String baseSeed) {
+        return createBatch(difficulty, count, baseSeed, new BacktrackingSudokuGenerator());
+    }
+
+    /**
+     * Generates several puzzles in parallel on the common fork/join pool.
+     *
+     * @see #createBatch(Difficulty, int, String, SudokuGenerator, ForkJoinPool)
+     */
+    public static List<SudokuWithSolution> createBatch(Difficulty difficulty, int count, String baseSeed, SudokuGenerator generator) {
+        if (count < 0) throw new IllegalArgumentException("Count must be positive but was " + count);
+        return createRange(difficulty, 0, count, baseSeed, generator);
+    }
+
+    private static List<SudokuWithSolution> createRange(Difficulty difficulty, int from, int to, String baseSeed, SudokuGenerator generator) {
+        return IntStream.range(from, to)
+                .parallel()
+                .mapToObj(i -> create(difficulty, childSeed(baseSeed, i), generator))
+                .toList();
+    }
+
+    /**
+     * Generates several puzzles in parallel on the given pool.
+     * The puzzle at index i is generated from {@link #childSeed(String, int) childSeed(baseSeed, i)},
+     * so the result only depends on the base seed and not on the amount of threads used.
+     *
+     * @param generator Generator shared by all worker threads, it must be thread-safe
+     * @param pool      The pool to generate on, its parallelism decides how many puzzles are generated at once
+     * @return The puzzles in the order of their index
+     */
+    public static List<SudokuWithSolution> createBatch(Difficulty difficulty, int count, String baseSeed, SudokuGenerator generator, ForkJoinPool pool) {
+        try {
+            return pool.submit(() -> createBatch(difficulty, count, baseSeed, generator)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating batch", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to generate batch", e.getCause());
+        }
+    }
+
+    /**
+     * Creates a lazy, sequential stream of puzzles in the order of their index, for batches too big to keep in memory at once.
+     * The puzzles are generated in windows of {@value #WINDOW_PER_THREAD} puzzles per thread of the common fork/join pool.
+     * A window is generated in parallel once the stream reaches it and then handed out in order,
+     * so at most one window is held in memory, and a short-circuiting operation like {@link Stream#limit} stops generation.
+     *
+     * @see #createBatch(Difficulty, int, String, SudokuGenerator, ForkJoinPool)
+     */
+    public static Stream<SudokuWithSolution> stream(Difficulty difficulty, int count, String baseSeed) {
+        return stream(difficulty, count, baseSeed, new BacktrackingSudokuGenerator());
+    }
+
+    /**
+     * @see #stream(Difficulty, int, String)
+     */
+    public static Stream<SudokuWithSolution> stream(Difficulty difficulty, int count, String baseSeed, SudokuGenerator generator) {
+        if (count < 0) throw new IllegalArgumentException("Count must be positive but was " + count);
+        int window = WINDOW_PER_THREAD * ForkJoinPool.getCommonPoolParallelism();
+        return IntStream.range(0, count / window + (count % window == 0 ? 0 : 1))
+                .mapToObj(w -> w * window)
+                .flatMap(from -> createRange(difficulty, from, from + Math.min(window, count - from), baseSeed, generator).stream());
+    }
+
+    /**
+     * Creates a seed for games that don't need to be reproduced.
+     * Unlike {@link java.util.UUID#randomUUID()} this never waits for system entropy.
+     */
+    public static String randomSeed() {
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Derives the seed of a single puzzle within a batch
+     */
+    public static String childSeed(String baseSeed, int index) {
+        return baseSeed + "/" + index;
+    }
+
     public static SudokuWithSolution load(InputStream in) throws IOException {
         return SudokuWithSolution.load(in);
     }
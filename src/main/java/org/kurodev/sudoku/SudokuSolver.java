@@ -0,0 +1,25 @@
+package org.kurodev.sudoku;
+
+/**
+ * Finds the solutions of a partially filled sudoku.
+ * Implementations may keep internal state between calls and are not required to be thread-safe.
+ */
+public interface SudokuSolver {
+
+    /**
+     * Searches for a single solution of the given puzzle. The puzzle itself is not modified.
+     */
+    default SolveResult solve(Sudoku puzzle) {
+        return solve(puzzle, 1);
+    }
+
+    /**
+     * Searches for solutions of the given puzzle until {@code maxSolutions} have been found
+     * or the search space is exhausted. The puzzle itself is not modified.
+     * <p>
+     * Passing 2 is the cheapest way to find out if a puzzle has exactly one solution.
+     *
+     * @param maxSolutions The amount of solutions after which the search stops, must be at least 1
+     */
+    SolveResult solve(Sudoku puzzle, int maxSolutions);
+}
@@ -1,5 +1,8 @@
 package org.kurodev.sudoku;
 
+import org.kurodev.sudoku.io.SudokuCodec;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -8,12 +11,15 @@ import java.util.Objects;
 
 /**
  * Container with a game and a possible solution.
- * That solution may not be the *only* solution to the game
+ * That solution may not be the *only* solution to the game,
+ * unless it was created by a generator that guarantees uniqueness
+ * such as {@link org.kurodev.sudoku.gen.BacktrackingSudokuGenerator#unique()}
  */
 public final class SudokuWithSolution {
     private final Sudoku game;
     private final Sudoku initialGame;
     private final Difficulty difficulty;
+    private final MoveHistory history = new MoveHistory();
 
     private int turns = 0;
 
@@ -32,13 +38,18 @@ public final class SudokuWithSolution {
     }
 
     static SudokuWithSolution load(InputStream in) throws IOException {
-        byte[] buf = new byte[4];
-        in.read(buf);
-        int turn = ByteBuffer.wrap(buf).getInt();
-        Difficulty difficulty = Difficulty.valueOf(in.read());
-        Sudoku game = new Sudoku();
-        Sudoku possibleSolution = new Sudoku();
-        game.readState(in);
+        //turn and difficulty, readNBytes keeps reading if a single read returns fewer bytes
+        byte[] header = in.readNBytes(5);
+        if (header.length != 5) throw new EOFException("Game header is truncated");
+        int turn = ByteBuffer.wrap(header).getInt();
+        Difficulty difficulty;
+        try {
+            difficulty = Difficulty.valueOf(header[4] & 0xFF);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid game", e);
+        }
+        Sudoku game = Sudoku.ofState(in);
+        Sudoku possibleSolution = new Sudoku(game.getGrid());
         possibleSolution.readState(in);
         return new SudokuWithSolution(game, possibleSolution, difficulty, turn);
     }
@@ -52,10 +63,9 @@ public final class SudokuWithSolution {
     }
 
     public void save(OutputStream out) throws IOException {
-        out.write(ByteBuffer.allocate(4).putInt(turns).array());
-        out.write(difficulty.ordinal());
-        game.writeState(out);
-        initialGame.writeState(out);
+        byte[] buf = new byte[SudokuCodec.gameSize(game.getGrid())];
+        SudokuCodec.encode(this, ByteBuffer.wrap(buf));
+        out.write(buf);
     }
 
     public Sudoku getGame() {
@@ -70,6 +80,37 @@ public final class SudokuWithSolution {
         return difficulty;
     }
 
+    /**
+     * The moves made with {@link #play(int, int)}. It is not part of {@link #save(OutputStream)},
+     * use {@link MoveHistory#write(OutputStream, Grid)} to store it alongside the game.
+     */
+    public MoveHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Sets the number of a cell of the game and records the move, so it can be undone
+     */
+    public void play(int num, int cell) {
+        int old = game.getNum(cell);
+        game.setNum(num, cell);
+        history.record(cell, old, num);
+    }
+
+    /**
+     * @return The cell that was changed, or -1 if there is nothing to undo
+     */
+    public int undo() {
+        return history.undo(game);
+    }
+
+    /**
+     * @return The cell that was changed, or -1 if there is nothing to redo
+     */
+    public int redo() {
+        return history.redo(game);
+    }
+
     public int getTurns() {
         return turns;
     }
@@ -97,5 +138,6 @@ public final class SudokuWithSolution {
 
     public void resetGame() {
         this.game.copyState(this.initialGame);
+        history.clear();
     }
 }
@@ -1,102 +1,414 @@
 package org.kurodev.sudoku.gen;
 
+import org.kurodev.metrics.GenerationEvent;
+import org.kurodev.metrics.Metrics;
 import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
 import org.kurodev.sudoku.Sudoku;
 import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
 
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
 
 public class BacktrackingSudokuGenerator implements SudokuGenerator {
-    private static final Set<Integer> NUMBERS = Set.of(1, 2, 3, 4, 5, 6, 7, 8, 9);
+    private static final int DEFAULT_MAX_ATTEMPTS = 50;
+    private static final Duration DEFAULT_TIME_BUDGET = Duration.ofSeconds(2);
+    //the generation control is checked every 1024 iterations of the fill loops
+    private static final int CHECK_INTERVAL = 0x3FF;
+
+    private final Version version;
+    private final boolean uniqueSolution;
+    private final int maxAttempts;
+    private final Duration timeBudget;
+    private final RemovalStrategy removal;
+
+    /**
+     * Creates a generator that removes clues at random, the resulting puzzle may have several solutions.
+     */
+    public BacktrackingSudokuGenerator() {
+        this(Version.CURRENT, false, DEFAULT_MAX_ATTEMPTS, DEFAULT_TIME_BUDGET, RemovalStrategy.random());
+    }
+
+    private BacktrackingSudokuGenerator(Version version, boolean uniqueSolution, int maxAttempts, Duration timeBudget, RemovalStrategy removal) {
+        this.version = version;
+        this.uniqueSolution = uniqueSolution;
+        this.maxAttempts = maxAttempts;
+        this.timeBudget = timeBudget;
+        this.removal = removal;
+    }
+
+    /**
+     * Creates a generator that only removes a clue if the puzzle keeps exactly one solution.
+     *
+     * @see #withUniqueSolution(int, Duration)
+     */
+    public static BacktrackingSudokuGenerator unique() {
+        return new BacktrackingSudokuGenerator(Version.CURRENT, true, DEFAULT_MAX_ATTEMPTS, DEFAULT_TIME_BUDGET, RemovalStrategy.random());
+    }
+
+    /**
+     * Returns a generator that only removes a clue if the puzzle keeps exactly one solution.
+     * <p>
+     * A single filled field can often not be reduced to the clue count of the difficulty without losing uniqueness,
+     * so generation retries with a new field up to {@code maxAttempts} times.
+     * If neither attempt reaches the clue range, or the time budget runs out first,
+     * the unique puzzle with the fewest clues above the range found so far is used.
+     * Puzzles with fewer clues than the difficulty allows are rejected, and so are fields
+     * from which the removal strategy could not remove a single clue.
+     * If no attempt produces a usable puzzle, generation throws an {@link IllegalStateException}.
+     * Results are only reproducible from the seed if the time budget is not what ends the search.
+     *
+     * @param maxAttempts The amount of filled fields to try before falling back
+     * @param timeBudget  The maximum time to spend on retries
+     */
+    public BacktrackingSudokuGenerator withUniqueSolution(int maxAttempts, Duration timeBudget) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1 but was " + maxAttempts);
+        return new BacktrackingSudokuGenerator(version, true, maxAttempts, Objects.requireNonNull(timeBudget), removal);
+    }
+
+    /**
+     * Returns a generator that uses the given algorithm version to turn seeds into puzzles
+     */
+    public BacktrackingSudokuGenerator withVersion(Version version) {
+        return new BacktrackingSudokuGenerator(Objects.requireNonNull(version), uniqueSolution, maxAttempts, timeBudget, removal);
+    }
+
+    /**
+     * Returns a generator that uses the given strategy to decide which clues to remove,
+     * for example {@link RemovalStrategy#rotational()} for symmetric puzzles.
+     * Strategies that do not stop at the clue count of the difficulty, like {@link RemovalStrategy#minimal()},
+     * are only useful together with {@link #withUniqueSolution(int, Duration)}.
+     */
+    public BacktrackingSudokuGenerator withRemoval(RemovalStrategy removal) {
+        return new BacktrackingSudokuGenerator(version, uniqueSolution, maxAttempts, timeBudget, Objects.requireNonNull(removal));
+    }
+
+    public Version getVersion() {
+        return version;
+    }
 
     public void generate(SudokuWithSolution container, String seed) {
-        Random rng = new SecureRandom(seed.getBytes(StandardCharsets.UTF_8));
-        generatePossibleSolution(container.getInitialGameState(), rng);
-        generateHints(container.getInitialGameState(), container.difficulty(), rng);
-        container.getGame().copyState(container.getInitialGameState());
+        generate(container, seed, GenerationControl.NONE);
+    }
+
+    /**
+     * Checks the control while filling the field and on every clue removal.
+     * Progress is reported for the current attempt, so with unique generation it may stall while a new field is tried.
+     * Every run emits a {@link GenerationEvent} while recording and, if enabled, updates the {@link Metrics}
+     * {@code generate.iterations}, {@code generate.backtracks}, {@code generate.cancelled} and {@code generate.time.<difficulty>}.
+     */
+    @Override
+    public void generate(SudokuWithSolution container, String seed, GenerationControl control) {
+        GenerationEvent event = Metrics.isRecording() ? new GenerationEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        FillStats stats = new FillStats();
+        boolean cancelled = false;
+        try {
+            Random rng = version.createRandom(seed);
+            if (uniqueSolution) {
+                generateUnique(container.getInitialGameState(), container.difficulty(), rng, control, stats);
+            } else {
+                generatePossibleSolution(container.getInitialGameState(), rng, control.slice(0, 0.5), stats);
+                generateHints(container.getInitialGameState(), container.difficulty(), rng, control.slice(0.5, 1));
+            }
+            container.getGame().copyState(container.getInitialGameState());
+            control.progress(1);
+        } catch (CancellationException e) {
+            cancelled = true;
+            throw e;
+        } finally {
+            record(container, start, stats, cancelled, event);
+        }
     }
 
-    private void generateHints(Sudoku game, Difficulty difficulty, Random rng) {
-        int hintAmount = rng.nextInt(difficulty.getMaxClues() - difficulty.getMinClues()) + difficulty.getMinClues();
-        assert hintAmount >= difficulty.getMinClues() : "hint amount is too few: " + hintAmount + " minimum: " + difficulty.getMinClues();
-        assert hintAmount <= difficulty.getMaxClues() : "hint amount is too big: " + hintAmount + " maximum: " + difficulty.getMaxClues();
+    private static void record(SudokuWithSolution container, long start, FillStats stats, boolean cancelled, GenerationEvent event) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.difficulty = container.difficulty().name();
+                event.size = container.getGame().getSize();
+                event.iterations = stats.iterations;
+                event.backtracks = stats.backtracks;
+                event.clues = container.getInitialGameState().getFilledCount();
+                event.cancelled = cancelled;
+                event.commit();
+            }
+        }
+        if (Metrics.isEnabled()) {
+            Metrics.count("generate.iterations", stats.iterations);
+            Metrics.count("generate.backtracks", stats.backtracks);
+            if (cancelled) {
+                Metrics.count("generate.cancelled", 1);
+            } else {
+                //cancelled runs would make the time of a difficulty look shorter than it is
+                Metrics.recordSince("generate.time." + container.difficulty().name(), start);
+            }
+        }
+    }
 
-        List<Coordinate> stack = new ArrayList<>();
+    private void generateUnique(Sudoku game, Difficulty difficulty, Random rng, GenerationControl control, FillStats stats) {
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        int cells = game.getGrid().cells();
+        int maxClues = difficulty.getMaxClues(cells);
+        int minClues = difficulty.getMinClues(cells);
+        int hintAmount = hintAmount(minClues, maxClues, rng);
+        DancingLinksSolver solver = new DancingLinksSolver();
+        Sudoku best = null;
+        int bestClues = Integer.MAX_VALUE;
 
-        for (int y = 0; y < Sudoku.FIELD_SIZE; y++) {
-            for (int x = 0; x < Sudoku.FIELD_SIZE; x++) {
-                Coordinate coord = new Coordinate(x, y);
-                stack.add(coord);
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            for (int cell = 0; cell < cells; cell++) {
+                game.clearNum(cell);
+            }
+            generatePossibleSolution(game, rng, control.slice(0, 0.3), stats);
+            Sudoku solution = game.copyState();
+            removal.removeClues(game, hintAmount, minClues, rng,
+                    tracked(game, hintAmount, control.slice(0.3, 1), removed -> removeIfUnique(game, solution, solver, removed)));
+            int clues = game.getFilledCount();
+            if (clues >= minClues && clues <= maxClues) {
+                return;
+            }
+            //fewer clues than the difficulty allows, or a field the strategy could not remove anything from, is never used
+            if (clues > maxClues && clues < cells && clues < bestClues) {
+                best = game.copyState();
+                bestClues = clues;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                break;
             }
         }
-        while (stack.size() > hintAmount) {
-            int removeIndex = rng.nextInt(stack.size());
-            Coordinate removed = stack.remove(removeIndex);
-            game.clearNum(removed);
+        if (best == null) {
+            throw new IllegalStateException("Unable to generate a unique " + difficulty + " puzzle, no attempt ended between "
+                    + minClues + " and " + maxClues + " clues");
         }
+        game.copyState(best);
     }
 
-    private void generatePossibleSolution(Sudoku game, Random rng) {
-        Deque<Coordinate> stack = new ArrayDeque<>();
-        Deque<Coordinate> visited = new ArrayDeque<>();
-        Map<Coordinate, Set<Integer>> triedNumbers = new HashMap<>();
+    /**
+     * Clears the cells, unless that allows a second solution.
+     * Only the cleared cells are checked against the known solution, so the cost does not grow with the amount of earlier removals.
+     */
+    private static boolean removeIfUnique(Sudoku game, Sudoku solution, DancingLinksSolver solver, int... cells) {
+        for (int cell : cells) {
+            game.clearNum(cell);
+        }
+        if (solver.hasOtherSolution(game, solution, cells)) {
+            for (int cell : cells) {
+                game.setNum(solution.getNum(cell), cell);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks the control before every removal and reports how close the field is to the target clue count
+     */
+    private static RemovalStrategy.Remover tracked(Sudoku game, int hintAmount, GenerationControl control, RemovalStrategy.Remover remover) {
+        int removals = Math.max(1, game.getGrid().cells() - hintAmount);
+        return removed -> {
+            control.checkpoint();
+            boolean out = remover.tryRemove(removed);
+            control.progress((double) (game.getGrid().cells() - game.getFilledCount()) / removals);
+            return out;
+        };
+    }
+
+    private void generateHints(Sudoku game, Difficulty difficulty, Random rng, GenerationControl control) {
+        int cells = game.getGrid().cells();
+        int minClues = difficulty.getMinClues(cells);
+        int maxClues = difficulty.getMaxClues(cells);
+        int hintAmount = hintAmount(minClues, maxClues, rng);
+        assert hintAmount >= minClues : "hint amount is too few: " + hintAmount + " minimum: " + minClues;
+        assert hintAmount <= maxClues : "hint amount is too big: " + hintAmount + " maximum: " + maxClues;
 
-        for (int y = 0; y < Sudoku.FIELD_SIZE; y++) {
-            for (int x = 0; x < Sudoku.FIELD_SIZE; x++) {
-                Coordinate coord = new Coordinate(x, y);
-                stack.push(coord);
-                triedNumbers.put(coord, new HashSet<>());
+        removal.removeClues(game, hintAmount, minClues, rng, tracked(game, hintAmount, control, removed -> {
+            for (int cell : removed) {
+                game.clearNum(cell);
             }
+            return true;
+        }));
+    }
+
+    private static int hintAmount(int minClues, int maxClues, Random rng) {
+        //on small fields the scaled range can be empty
+        return maxClues > minClues ? rng.nextInt(maxClues - minClues) + minClues : minClues;
+    }
+
+    private void generatePossibleSolution(Sudoku game, Random rng, GenerationControl control, FillStats stats) {
+        if (game.getGrid() != Grid.STANDARD) {
+            generateLargeSolution(game, rng, control, stats);
+            return;
+        }
+        final int cells = game.getGrid().cells();
+        //cell indices are small enough to use the Integer cache, so the deques don't allocate per push
+        Deque<Integer> stack = new ArrayDeque<>();
+        Deque<Integer> visited = new ArrayDeque<>();
+        //bit n is set if the number n has already been tried for the cell
+        int[] triedNumbers = new int[cells];
+
+        for (int cell = 0; cell < cells; cell++) {
+            stack.push(cell);
         }
 
         int iterations = 0;
+        int backtracks = 0;
         while (!stack.isEmpty()) {
             iterations++;
             if (iterations > 1_000_000) {
                 throw new RuntimeException("Unable to generate Sudoku puzzle");
             }
-            Coordinate pos = stack.peek();
-            Set<Integer> tried = triedNumbers.get(pos);
-            List<Integer> available = availableNumbers(game, pos).stream()
-                    .filter(num -> !tried.contains(num))
-                    .toList();
+            if ((iterations & CHECK_INTERVAL) == 0) {
+                control.checkpoint();
+                control.progress((double) visited.size() / cells);
+            }
+            int pos = stack.peek();
+            int available = game.getCandidates(pos) & ~triedNumbers[pos];
 
-            if (available.isEmpty()) {
+            if (available == 0) {
+                backtracks++;
                 game.clearNum(pos);
-                tried.clear(); // Clear tried numbers for this cell
+                triedNumbers[pos] = 0; // Clear tried numbers for this cell
                 stack.addFirst(stack.pop());
                 if (!visited.isEmpty()) {
-                    Coordinate prevPos = visited.peek();
+                    int prevPos = visited.peek();
                     int num = game.getNum(prevPos);
                     //prevPos should be a filled field that has been visited before.
-                    assert num != 0 : "Previous field should not be 0 at " + prevPos;
-                    triedNumbers.get(prevPos).add(num); // Add the number at prevPos to its tried set
+                    assert num != 0 : "Previous field should not be 0 at " + game.getGrid().coordinateOf(prevPos);
+                    triedNumbers[prevPos] |= 1 << num; // Add the number at prevPos to its tried set
                     game.clearNum(prevPos); // Clear the number at prevPos
                     stack.push(visited.pop()); //push the last visited cell back on the stack to reevaluate it.
                 }
             } else {
-                int num = available.get(rng.nextInt(available.size()));
+                int num = nthSetBit(available, rng.nextInt(Integer.bitCount(available)));
                 game.setNum(num, pos);
-                tried.add(num); // Add this number to the tried set
+                triedNumbers[pos] |= 1 << num; // Add this number to the tried set
                 visited.push(stack.pop());
             }
         }
-        System.out.println("generation finished after " + iterations + " iterations");
+        stats.iterations += iterations;
+        stats.backtracks += backtracks;
     }
 
+    /**
+     * Fills a field of any size. Filling cells in a fixed order gets stuck for a very long time on fields bigger than 9x9,
+     * so this always continues with the empty cell that has the fewest candidates left,
+     * and starts over with an empty field if a run takes longer than a budget proportional to the field size.
+     */
+    private void generateLargeSolution(Sudoku game, Random rng, GenerationControl control, FillStats stats) {
+        final int cells = game.getGrid().cells();
+        final int budget = 100 * cells;
+        int[] filled = new int[cells];
+        //bit n is set if the number n has already been tried for the cell, only valid while the cell is on the stack
+        int[] triedNumbers = new int[cells];
+        for (int restart = 0; restart < 1_000; restart++) {
+            for (int cell = 0; cell < cells; cell++) {
+                game.clearNum(cell);
+            }
+            int depth = 0;
+            int iterations = 0;
+            int backtracks = 0;
+            int pos = mostConstrainedCell(game, rng);
+            triedNumbers[pos] = 0;
+            while (pos >= 0 && iterations++ < budget) {
+                if ((iterations & CHECK_INTERVAL) == 0) {
+                    control.checkpoint();
+                    control.progress((double) depth / cells);
+                }
+                int available = game.getCandidates(pos) & ~triedNumbers[pos];
+                if (available == 0) {
+                    if (depth == 0) break;
+                    backtracks++;
+                    //go back to the last filled cell and try its next number
+                    pos = filled[--depth];
+                    game.clearNum(pos);
+                    continue;
+                }
+                int num = nthSetBit(available, rng.nextInt(Integer.bitCount(available)));
+                game.setNum(num, pos);
+                triedNumbers[pos] |= 1 << num;
+                filled[depth++] = pos;
+                pos = mostConstrainedCell(game, rng);
+                if (pos >= 0) {
+                    triedNumbers[pos] = 0;
+                }
+            }
+            stats.iterations += iterations;
+            stats.backtracks += backtracks;
+            if (pos < 0) {
+                return;
+            }
+        }
+        throw new RuntimeException("Unable to generate Sudoku puzzle");
+    }
+
+    /**
+     * @return The empty cell with the fewest candidates, ties are broken at random. -1 if the field is full
+     */
+    private static int mostConstrainedCell(Sudoku game, Random rng) {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int cell = 0; cell < game.getGrid().cells(); cell++) {
+            if (game.getNum(cell) != 0) continue;
+            int count = Integer.bitCount(game.getCandidates(cell));
+            if (count < bestCount) {
+                best = cell;
+                bestCount = count;
+                ties = 1;
+            } else if (count == bestCount && rng.nextInt(++ties) == 0) {
+                best = cell;
+            }
+        }
+        return best;
+    }
 
-    private List<Integer> availableNumbers(Sudoku game, Coordinate c) {
-        var usedNumbers = game.getLineNums(c);
-        usedNumbers.addAll(game.getGroupNums(c));
+    /**
+     * @return The position of the n-th lowest set bit in the mask, which is the n-th smallest number it contains
+     */
+    private static int nthSetBit(int mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * The algorithm used to derive the random numbers of a generation run from its seed.
+     * A puzzle can only be recreated from its seed with the version that generated it.
+     */
+    public enum Version {
+        /**
+         * {@link SecureRandom} seeded with the UTF-8 bytes of the seed.
+         * Depending on the security provider the seed is mixed with system entropy,
+         * so the same seed does not necessarily produce the same puzzle.
+         */
+        LEGACY,
+        /**
+         * {@link SeededRandom}, which produces the same puzzle for the same seed on every JVM.
+         */
+        V2;
+
+        public static final Version CURRENT = V2;
+
+        Random createRandom(String seed) {
+            return switch (this) {
+                case LEGACY -> new SecureRandom(seed.getBytes(StandardCharsets.UTF_8));
+                case V2 -> new SeededRandom(seed);
+            };
+        }
+    }
 
-        List<Integer> list = NUMBERS.stream()
-                .filter(integer -> !usedNumbers.contains(integer))
-                .filter(integer -> integer != 0)
-                .sorted()
-                .collect(Collectors.toList());
-        return list;
+    /**
+     * Work done by the fill loops during one run, summed over all attempts and restarts
+     */
+    private static final class FillStats {
+        long iterations;
+        long backtracks;
     }
 }
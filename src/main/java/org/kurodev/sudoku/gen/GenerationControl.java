@@ -0,0 +1,97 @@
+package org.kurodev.sudoku.gen;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Lets the caller of a {@link SudokuGenerator} stop a generation run and follow its progress.
+ * <p>
+ * Generators call {@link #checkpoint()} regularly, which throws a {@link CancellationException}
+ * once the control was cancelled or its deadline passed, and report their progress with {@link #progress(double)}.
+ * The listener is called on the generating thread, only when the progress grew by at least one percent.
+ * <p>
+ * Instances are thread-safe, {@link #cancel()} is meant to be called from another thread.
+ */
+public final class GenerationControl {
+    /**
+     * Never cancels and ignores progress
+     */
+    public static final GenerationControl NONE = new GenerationControl(null, fraction -> {
+    });
+    private static final double REPORT_STEP = 0.01;
+
+    private final AtomicBoolean cancelled;
+    private final long deadline;
+    private final DoubleConsumer listener;
+    //the part of the parent's progress this control reports, see slice
+    private final double from;
+    private final double to;
+    private final GenerationControl parent;
+    private double reported = -1;
+
+    /**
+     * @param timeout  The time after which generation is cancelled, or null for no deadline
+     * @param listener Called with the progress between 0 and 1
+     */
+    public GenerationControl(Duration timeout, DoubleConsumer listener) {
+        this(new AtomicBoolean(), timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos(), listener, 0, 1, null);
+    }
+
+    private GenerationControl(AtomicBoolean cancelled, long deadline, DoubleConsumer listener, double from, double to, GenerationControl parent) {
+        this.cancelled = cancelled;
+        this.deadline = deadline;
+        this.listener = listener;
+        this.from = from;
+        this.to = to;
+        this.parent = parent;
+    }
+
+    /**
+     * Returns a control for a part of the work, e.g. a single attempt of several.
+     * It shares the cancellation and deadline, and its progress from 0 to 1 is reported as {@code from} to {@code to}.
+     */
+    public GenerationControl slice(double from, double to) {
+        if (this == NONE) return NONE;
+        return new GenerationControl(cancelled, deadline, null, from, to, this);
+    }
+
+    public void cancel() {
+        if (this == NONE) throw new UnsupportedOperationException("NONE cannot be cancelled");
+        cancelled.set(true);
+    }
+
+    /**
+     * @return true if the control was cancelled or its deadline passed
+     */
+    public boolean isCancelled() {
+        return cancelled.get() || deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * @throws CancellationException if generation should stop
+     */
+    public void checkpoint() {
+        if (cancelled.get()) throw new CancellationException("Generation was cancelled");
+        if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0) throw new CancellationException("Generation deadline passed");
+    }
+
+    /**
+     * Reports the progress. Progress never goes back, smaller values than before are ignored
+     *
+     * @param fraction Between 0 and 1
+     */
+    public void progress(double fraction) {
+        if (this == NONE) return;
+        fraction = Math.max(0, Math.min(1, fraction));
+        if (parent != null) {
+            parent.progress(from + (to - from) * fraction);
+            return;
+        }
+        if (fraction >= 1 && reported < 1 || fraction - reported >= REPORT_STEP) {
+            reported = fraction;
+            listener.accept(reported);
+        }
+    }
+}
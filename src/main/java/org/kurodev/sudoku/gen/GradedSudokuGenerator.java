@@ -0,0 +1,73 @@
+package org.kurodev.sudoku.gen;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.grade.Grade;
+import org.kurodev.sudoku.grade.LogicalSolver;
+
+/**
+ * Generates puzzles whose {@link Grade} matches the requested difficulty,
+ * instead of only matching its clue count.
+ * <p>
+ * Puzzles are generated by a base generator and graded with the {@link LogicalSolver}
+ * until one of them requires a technique of the requested difficulty.
+ * Fewer clues do not always make a harder puzzle, so the attempts cycle through the clue counts
+ * of the requested difficulty and all harder ones.
+ * Attempt i uses the seed {@code seed + "#" + i}, so the result stays reproducible from the seed.
+ * Attempts are generated on the grid of the container, so any supported field size can be graded.
+ * If no attempt matches, the puzzle whose grade came closest is used.
+ */
+public class GradedSudokuGenerator implements SudokuGenerator {
+    private static final ThreadLocal<LogicalSolver> SOLVERS = ThreadLocal.withInitial(LogicalSolver::new);
+
+    private final SudokuGenerator base;
+    private final int maxAttempts;
+
+    /**
+     * Uses {@link BacktrackingSudokuGenerator#unique()} as base, since grading assumes a unique solution
+     */
+    public GradedSudokuGenerator() {
+        this(BacktrackingSudokuGenerator.unique(), 100);
+    }
+
+    /**
+     * @param base        Generator for the puzzles to grade, it should only produce puzzles with a unique solution
+     * @param maxAttempts The amount of puzzles to grade before falling back to the closest one
+     */
+    public GradedSudokuGenerator(SudokuGenerator base, int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1 but was " + maxAttempts);
+        this.base = base;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Override
+    public void generate(SudokuWithSolution container, String seed) {
+        generate(container, seed, GenerationControl.NONE);
+    }
+
+    /**
+     * Progress is reported per attempt, so it jumps to the end once an attempt matches
+     */
+    @Override
+    public void generate(SudokuWithSolution container, String seed, GenerationControl control) {
+        LogicalSolver solver = SOLVERS.get();
+        int target = container.difficulty().ordinal();
+        SudokuWithSolution best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int attempt = 0; attempt < maxAttempts && bestDistance > 0; attempt++) {
+            Difficulty clues = Difficulty.valueOf(target + attempt % (Difficulty.values().length - target));
+            GenerationControl slice = control.slice((double) attempt / maxAttempts, (double) (attempt + 1) / maxAttempts);
+            SudokuWithSolution candidate = SudokuFactory.create(clues, container.getGame().getGrid(), seed + "#" + attempt, base, slice);
+            Grade grade = solver.grade(candidate.getInitialGameState());
+            int distance = Math.abs(grade.difficulty().ordinal() - target);
+            if (distance < bestDistance) {
+                best = candidate;
+                bestDistance = distance;
+            }
+        }
+        container.getInitialGameState().copyState(best.getInitialGameState());
+        container.getGame().copyState(best.getInitialGameState());
+        control.progress(1);
+    }
+}
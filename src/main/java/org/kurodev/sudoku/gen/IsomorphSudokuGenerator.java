@@ -0,0 +1,58 @@
+package org.kurodev.sudoku.gen;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.symmetry.Symmetry;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Derives new puzzles from already generated ones by applying a random {@link Symmetry}.
+ * <p>
+ * Every base puzzle has over a million variants that look different but keep its clue count,
+ * its uniqueness and the techniques needed to solve it, so expensive generation and grading only has to happen once.
+ * For every request one of the base puzzles of the requested difficulty and size is transformed, both chosen by the seed
+ * with {@link SeededRandom}, so the same seed always produces the same puzzle.
+ */
+public class IsomorphSudokuGenerator implements SudokuGenerator {
+    //grids are shared instances, one per box size
+    private final Map<Grid, Map<Difficulty, List<SudokuWithSolution>>> bases = new HashMap<>();
+
+    /**
+     * @param bases The puzzles to derive from, their initial state is used. At least one is required
+     */
+    public IsomorphSudokuGenerator(List<SudokuWithSolution> bases) {
+        if (bases.isEmpty()) throw new IllegalArgumentException("At least one base puzzle is required");
+        for (SudokuWithSolution base : bases) {
+            //keep a private copy, so later changes to the base do not change what a seed produces
+            var copy = new SudokuWithSolution(base.getInitialGameState().copyState(), base.getInitialGameState().copyState(), base.difficulty());
+            this.bases.computeIfAbsent(copy.getInitialGameState().getGrid(), g -> new EnumMap<>(Difficulty.class))
+                    .computeIfAbsent(base.difficulty(), d -> new ArrayList<>()).add(copy);
+        }
+    }
+
+    public IsomorphSudokuGenerator(SudokuWithSolution... bases) {
+        this(List.of(bases));
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no base puzzle of the difficulty and size of the container
+     */
+    @Override
+    public void generate(SudokuWithSolution container, String seed) {
+        Grid grid = container.getInitialGameState().getGrid();
+        List<SudokuWithSolution> candidates = bases.getOrDefault(grid, Map.of()).getOrDefault(container.difficulty(), List.of());
+        if (candidates.isEmpty())
+            throw new IllegalArgumentException("No base puzzle of difficulty " + container.difficulty() + " and size " + grid.size());
+        Random rng = new SeededRandom(seed);
+        SudokuWithSolution base = candidates.get(rng.nextInt(candidates.size()));
+        Symmetry.random(grid, rng).apply(base.getInitialGameState(), container.getInitialGameState());
+        container.getGame().copyState(container.getInitialGameState());
+    }
+}
@@ -0,0 +1,142 @@
+package org.kurodev.sudoku.gen;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Decides which clues {@link BacktrackingSudokuGenerator} removes from a filled field, and in which order.
+ * <p>
+ * A strategy only proposes removals. Whether a removal is kept is up to the {@link Remover},
+ * which for unique generation rejects every removal that allows a second solution.
+ * Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface RemovalStrategy {
+    /**
+     * @param field   The field to remove clues from, it is full when this is called
+     * @param target  The amount of clues the difficulty asks for
+     * @param floor   The smallest amount of clues the difficulty allows
+     * @param rng     The only source of randomness, so results stay reproducible from the seed
+     * @param remover Clears cells if that keeps the puzzle acceptable
+     */
+    void removeClues(Sudoku field, int target, int floor, Random rng, Remover remover);
+
+    @FunctionalInterface
+    interface Remover {
+        /**
+         * Clears all the given cells at once, or none of them
+         *
+         * @return true if the cells were cleared
+         */
+        boolean tryRemove(int... cells);
+    }
+
+    /**
+     * Removes single cells in random order until the target is reached
+     */
+    static RemovalStrategy random() {
+        return (field, target, floor, rng, remover) -> {
+            List<Integer> remaining = new ArrayList<>();
+            for (int cell = 0; cell < field.getGrid().cells(); cell++) {
+                remaining.add(cell);
+            }
+            while (field.getFilledCount() > target && !remaining.isEmpty()) {
+                remover.tryRemove(remaining.remove(rng.nextInt(remaining.size())));
+            }
+        };
+    }
+
+    /**
+     * Removes cells together with their counterpart rotated by 180 degrees, the layout most printed puzzles use
+     */
+    static RemovalStrategy rotational() {
+        return symmetric(grid -> cell -> grid.cells() - 1 - cell);
+    }
+
+    /**
+     * Removes cells together with their counterpart mirrored at the vertical center line
+     */
+    static RemovalStrategy mirror() {
+        return symmetric(grid -> cell -> grid.indexOf(grid.size() - 1 - grid.colOf(cell), grid.rowOf(cell)));
+    }
+
+    /**
+     * @param counterpart The cell that has to be removed together with a cell, which may be the cell itself
+     */
+    private static RemovalStrategy symmetric(Function<Grid, IntUnaryOperator> counterpart) {
+        return (field, target, floor, rng, remover) -> {
+            Grid grid = field.getGrid();
+            IntUnaryOperator counterpartOf = counterpart.apply(grid);
+            boolean[] tried = new boolean[grid.cells()];
+            for (int cell : shuffledCells(grid, rng)) {
+                if (field.getFilledCount() <= target) break;
+                int other = counterpartOf.applyAsInt(cell);
+                if (tried[cell]) continue;
+                tried[cell] = tried[other] = true;
+                if (other == cell) {
+                    remover.tryRemove(cell);
+                } else if (field.getFilledCount() - 2 >= floor) {
+                    remover.tryRemove(cell, other);
+                }
+            }
+        };
+    }
+
+    /**
+     * Tries to remove every cell once, without stopping at the target but never going below the floor.
+     * Unless the floor stops it, the result is a minimal puzzle, where removing any of the remaining clues
+     * would allow a second solution. This is only useful for unique generation, otherwise it simply stops at the floor.
+     */
+    static RemovalStrategy minimal() {
+        return (field, target, floor, rng, remover) -> {
+            for (int cell : shuffledCells(field.getGrid(), rng)) {
+                if (field.getFilledCount() <= floor) break;
+                remover.tryRemove(cell);
+            }
+        };
+    }
+
+    /**
+     * Keeps clues exactly at the marked cells of a template and removes everything else at once.
+     * For unique generation, fields whose clues at these cells do not have a unique solution are rejected,
+     * and generation fails if that happens to every attempt. Templates with fewer clues than the difficulty allows always fail.
+     *
+     * @param template One character per cell row by row, {@code x} or {@code X} marks a clue, anything else an empty cell.
+     *                 Whitespace and line breaks are ignored
+     */
+    static RemovalStrategy pattern(String template) {
+        String cells = template.replaceAll("\\s", "");
+        List<Integer> emptyCells = new ArrayList<>();
+        for (int cell = 0; cell < cells.length(); cell++) {
+            if (Character.toLowerCase(cells.charAt(cell)) != 'x') {
+                emptyCells.add(cell);
+            }
+        }
+        int[] remove = emptyCells.stream().mapToInt(Integer::intValue).toArray();
+        return (field, target, floor, rng, remover) -> {
+            if (cells.length() != field.getGrid().cells())
+                throw new IllegalArgumentException("Pattern has " + cells.length() + " cells but the field has " + field.getGrid().cells());
+            remover.tryRemove(remove);
+        };
+    }
+
+    private static int[] shuffledCells(Grid grid, Random rng) {
+        int[] order = new int[grid.cells()];
+        for (int cell = 0; cell < order.length; cell++) {
+            order[cell] = cell;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+}
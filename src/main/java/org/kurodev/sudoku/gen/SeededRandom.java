@@ -0,0 +1,77 @@
+package org.kurodev.sudoku.gen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * A fast, non thread-safe random number generator whose output only depends on its seed.
+ * <p>
+ * The seed string is hashed with 64-bit FNV-1a, expanded into the generator state with SplitMix64,
+ * and numbers are drawn with xoshiro256**. All bounded methods are the ones inherited from {@link Random},
+ * whose algorithms are part of its specification, so a seed yields the same sequence on every JVM.
+ */
+public final class SeededRandom extends Random {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long s0, s1, s2, s3;
+
+    public SeededRandom(long seed) {
+        super(0L);
+        seedState(seed);
+    }
+
+    public SeededRandom(String seed) {
+        this(hash(seed));
+    }
+
+    /**
+     * Stable 64-bit FNV-1a hash of the UTF-8 bytes of the string
+     */
+    public static long hash(String seed) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : seed.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        //called by the super constructor before the state exists, the real seeding happens in the constructor
+        seedState(seed);
+    }
+
+    private void seedState(long seed) {
+        long x = seed;
+        s0 = splitMix(x += 0x9e3779b97f4a7c15L);
+        s1 = splitMix(x += 0x9e3779b97f4a7c15L);
+        s2 = splitMix(x += 0x9e3779b97f4a7c15L);
+        s3 = splitMix(x + 0x9e3779b97f4a7c15L);
+    }
+
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public long nextLong() {
+        long result = Long.rotateLeft(s1 * 5, 7) * 9;
+        long t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+}
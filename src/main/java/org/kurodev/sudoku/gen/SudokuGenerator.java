@@ -2,6 +2,25 @@ package org.kurodev.sudoku.gen;
 
 import org.kurodev.sudoku.SudokuWithSolution;
 
+/**
+ * Fills a container with a new puzzle.
+ * Implementations should be thread-safe so a single instance can be shared by batch generation,
+ * see {@link org.kurodev.sudoku.SudokuFactory#createBatch}.
+ */
 public interface SudokuGenerator {
     void generate(SudokuWithSolution game, String seed);
+
+    /**
+     * Generates a puzzle that can be cancelled and reports its progress.
+     * Generators that run for long should override this and check the control regularly,
+     * by default it is only checked before generation starts.
+     *
+     * @throws java.util.concurrent.CancellationException if the control was cancelled or its deadline passed,
+     *                                                    the container is left in an undefined state
+     */
+    default void generate(SudokuWithSolution game, String seed, GenerationControl control) {
+        control.checkpoint();
+        generate(game, seed);
+        control.progress(1);
+    }
 }
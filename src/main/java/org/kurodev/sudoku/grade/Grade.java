@@ -0,0 +1,18 @@
+package org.kurodev.sudoku.grade;
+
+import org.kurodev.sudoku.Difficulty;
+
+/**
+ * The result of grading a puzzle with the {@link LogicalSolver}.
+ *
+ * @param hardest The hardest technique that was needed,
+ *                {@link Technique#TRIAL_AND_ERROR} if the puzzle could not be solved by logic alone
+ * @param steps   The amount of techniques that were applied
+ * @param solved  Whether the puzzle was solved by logic alone
+ */
+public record Grade(Technique hardest, int steps, boolean solved) {
+
+    public Difficulty difficulty() {
+        return hardest.getDifficulty();
+    }
+}
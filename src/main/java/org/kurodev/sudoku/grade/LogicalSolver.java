@@ -0,0 +1,500 @@
+package org.kurodev.sudoku.grade;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Solves sudokus the way a human would, by repeatedly applying the simplest {@link Technique} that makes progress.
+ * <p>
+ * Candidates are kept as bitmasks per cell, bit n standing for the number n, and all working memory is allocated
+ * once per grid size, so grading does not allocate per step. Only {@link #nextStep(Sudoku)} creates a {@link Step}.
+ * <p>
+ * Instances are not thread-safe, use one solver per thread.
+ */
+public class LogicalSolver {
+    private static final int MAX_SUBSET = 3;
+    private static final ThreadLocal<LogicalSolver> SOLVERS = ThreadLocal.withInitial(LogicalSolver::new);
+
+    private Grid grid;
+    private int size;
+    private int allDigits;
+    private int[] values;
+    private int[] candidates;
+    private int unsolved;
+    private boolean contradiction;
+
+    //scratch space for the subset techniques
+    private int[] buffer;
+    private int[] lineMasks;
+    private final int[] chosen = new int[MAX_SUBSET];
+
+    //details of the last applied step
+    private int[] pattern;
+    private int patternCount;
+    private int[] changed;
+    private int changedCount;
+    private int stepDigits;
+    private boolean stepPlacement;
+
+    /**
+     * Grades the puzzle by the hardest technique needed to solve it. The puzzle itself is not modified.
+     *
+     * @throws IllegalArgumentException if the puzzle contains clashing numbers
+     */
+    public Grade grade(Sudoku puzzle) {
+        load(puzzle);
+        Technique hardest = Technique.NAKED_SINGLE;
+        int steps = 0;
+        while (unsolved > 0) {
+            Technique technique = step();
+            if (technique == null) {
+                return new Grade(Technique.TRIAL_AND_ERROR, steps, false);
+            }
+            steps++;
+            if (technique.compareTo(hardest) > 0) {
+                hardest = technique;
+            }
+        }
+        return new Grade(hardest, steps, true);
+    }
+
+    /**
+     * Grades every puzzle of the stream, reusing one solver per thread.
+     * Works with parallel streams, e.g. {@code puzzles.parallel()} to grade a big batch on all cores.
+     */
+    public static Stream<Grade> gradeAll(Stream<Sudoku> puzzles) {
+        return puzzles.map(puzzle -> SOLVERS.get().grade(puzzle));
+    }
+
+    /**
+     * Finds the simplest deduction that can be made on the puzzle. The puzzle itself is not modified.
+     *
+     * @return The deduction, or null if the puzzle is already solved or cannot be progressed by logic
+     * @throws IllegalArgumentException if the puzzle contains clashing numbers
+     */
+    public Step nextStep(Sudoku puzzle) {
+        load(puzzle);
+        if (unsolved == 0) {
+            return null;
+        }
+        Technique technique = step();
+        if (technique == null) {
+            return null;
+        }
+        List<Integer> patternCells = new ArrayList<>(patternCount);
+        for (int i = 0; i < patternCount; i++) {
+            patternCells.add(pattern[i]);
+        }
+        List<Integer> changedCells = new ArrayList<>(changedCount);
+        for (int i = 0; i < changedCount; i++) {
+            changedCells.add(changed[i]);
+        }
+        return new Step(technique, List.copyOf(patternCells), List.copyOf(changedCells), stepDigits, stepPlacement);
+    }
+
+    private void load(Sudoku puzzle) {
+        if (puzzle.getConflictCount() != 0) {
+            throw new IllegalArgumentException("Puzzle contains clashing numbers:\n" + puzzle);
+        }
+        if (grid != puzzle.getGrid()) {
+            grid = puzzle.getGrid();
+            size = grid.size();
+            allDigits = ((1 << (size + 1)) - 1) & ~1;
+            values = new int[grid.cells()];
+            candidates = new int[grid.cells()];
+            buffer = new int[size + 1];
+            lineMasks = new int[size];
+            pattern = new int[grid.cells()];
+            changed = new int[grid.cells()];
+        }
+        unsolved = 0;
+        contradiction = false;
+        for (int cell = 0; cell < grid.cells(); cell++) {
+            int num = puzzle.getNum(cell);
+            values[cell] = num;
+            if (num == 0) {
+                candidates[cell] = puzzle.getCandidates(cell);
+                unsolved++;
+            } else {
+                candidates[cell] = 0;
+            }
+        }
+    }
+
+    /**
+     * Applies the simplest technique that makes progress
+     *
+     * @return The applied technique or null if none made progress
+     */
+    private Technique step() {
+        patternCount = 0;
+        changedCount = 0;
+        //a cell or unit without any option left means the puzzle has no solution
+        if (nakedSingle()) return Technique.NAKED_SINGLE;
+        if (contradiction) return null;
+        if (hiddenSingle()) return Technique.HIDDEN_SINGLE;
+        if (contradiction) return null;
+        if (lockedCandidates()) return Technique.LOCKED_CANDIDATES;
+        if (nakedSubset(2)) return Technique.NAKED_PAIR;
+        if (hiddenSubset(2)) return Technique.HIDDEN_PAIR;
+        if (nakedSubset(3)) return Technique.NAKED_TRIPLE;
+        if (hiddenSubset(3)) return Technique.HIDDEN_TRIPLE;
+        if (fish(2)) return Technique.X_WING;
+        if (fish(3)) return Technique.SWORDFISH;
+        return null;
+    }
+
+    private void place(int cell, int num) {
+        values[cell] = num;
+        candidates[cell] = 0;
+        unsolved--;
+        int bit = 1 << num;
+        for (int i = 0; i < grid.peerCount(); i++) {
+            candidates[grid.peer(cell, i)] &= ~bit;
+        }
+        changed[changedCount++] = cell;
+        stepDigits = bit;
+        stepPlacement = true;
+    }
+
+    /**
+     * Removes the digits of the mask from the candidates of the cell
+     *
+     * @return true if the cell lost at least one candidate
+     */
+    private boolean eliminate(int cell, int mask) {
+        if ((candidates[cell] & mask) == 0) {
+            return false;
+        }
+        candidates[cell] &= ~mask;
+        changed[changedCount++] = cell;
+        return true;
+    }
+
+    private void eliminated(int digits) {
+        stepDigits = digits;
+        stepPlacement = false;
+    }
+
+    private boolean nakedSingle() {
+        for (int cell = 0; cell < grid.cells(); cell++) {
+            if (values[cell] != 0) continue;
+            int cand = candidates[cell];
+            if (cand == 0) {
+                contradiction = true;
+                return false;
+            }
+            if ((cand & (cand - 1)) == 0) {
+                pattern[patternCount++] = cell;
+                place(cell, Integer.numberOfTrailingZeros(cand));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hiddenSingle() {
+        for (int unit = 0; unit < grid.unitCount(); unit++) {
+            int once = 0, twice = 0, placed = 0;
+            for (int i = 0; i < size; i++) {
+                int cell = grid.unitCell(unit, i);
+                if (values[cell] != 0) {
+                    placed |= 1 << values[cell];
+                } else {
+                    twice |= once & candidates[cell];
+                    once |= candidates[cell];
+                }
+            }
+            if ((once | placed) != allDigits) {
+                contradiction = true;
+                return false;
+            }
+            int hidden = once & ~twice;
+            if (hidden == 0) continue;
+            int num = Integer.numberOfTrailingZeros(hidden);
+            for (int i = 0; i < size; i++) {
+                int cell = grid.unitCell(unit, i);
+                if ((candidates[cell] & hidden & -hidden) != 0) {
+                    for (int j = 0; j < size; j++) {
+                        pattern[patternCount++] = grid.unitCell(unit, j);
+                    }
+                    place(cell, num);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean lockedCandidates() {
+        for (int num = 1; num <= size; num++) {
+            int bit = 1 << num;
+            //pointing: all candidates of a box lie on one line, so the rest of the line can't hold the number
+            for (int box = 0; box < size; box++) {
+                int unit = 2 * size + box;
+                int row = -1, col = -1;
+                boolean sameRow = true, sameCol = true;
+                for (int i = 0; i < size; i++) {
+                    int cell = grid.unitCell(unit, i);
+                    if ((candidates[cell] & bit) == 0) continue;
+                    if (row == -1) {
+                        row = grid.rowOf(cell);
+                        col = grid.colOf(cell);
+                    } else {
+                        sameRow &= row == grid.rowOf(cell);
+                        sameCol &= col == grid.colOf(cell);
+                    }
+                }
+                if (row == -1) continue;
+                if (sameRow && eliminateOutsideBox(row, box, bit) || sameCol && eliminateOutsideBox(size + col, box, bit)) {
+                    addPattern(unit, bit);
+                    eliminated(bit);
+                    return true;
+                }
+            }
+            //claiming: all candidates of a line lie in one box, so the rest of the box can't hold the number
+            for (int line = 0; line < 2 * size; line++) {
+                int box = -1;
+                boolean sameBox = true;
+                for (int i = 0; i < size; i++) {
+                    int cell = grid.unitCell(line, i);
+                    if ((candidates[cell] & bit) == 0) continue;
+                    if (box == -1) {
+                        box = grid.boxOf(cell);
+                    } else {
+                        sameBox &= box == grid.boxOf(cell);
+                    }
+                }
+                if (box == -1 || !sameBox) continue;
+                boolean progress = false;
+                for (int i = 0; i < size; i++) {
+                    int cell = grid.unitCell(2 * size + box, i);
+                    if (!isInLine(cell, line)) {
+                        progress |= eliminate(cell, bit);
+                    }
+                }
+                if (progress) {
+                    addPattern(line, bit);
+                    eliminated(bit);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isInLine(int cell, int line) {
+        return line < size ? grid.rowOf(cell) == line : grid.colOf(cell) == line - size;
+    }
+
+    private boolean eliminateOutsideBox(int line, int box, int bit) {
+        boolean progress = false;
+        for (int i = 0; i < size; i++) {
+            int cell = grid.unitCell(line, i);
+            if (grid.boxOf(cell) != box) {
+                progress |= eliminate(cell, bit);
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Adds all cells of the unit that have one of the digits as candidate to the pattern
+     */
+    private void addPattern(int unit, int digits) {
+        for (int i = 0; i < size; i++) {
+            int cell = grid.unitCell(unit, i);
+            if ((candidates[cell] & digits) != 0) {
+                pattern[patternCount++] = cell;
+            }
+        }
+    }
+
+    /**
+     * Looks for k cells in a unit that only have k candidates between them.
+     * Those candidates can't go anywhere else in the unit.
+     */
+    private boolean nakedSubset(int k) {
+        for (int unit = 0; unit < grid.unitCount(); unit++) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int cell = grid.unitCell(unit, i);
+                int count = Integer.bitCount(candidates[cell]);
+                if (values[cell] == 0 && count >= 2 && count <= k) {
+                    buffer[n++] = cell;
+                }
+            }
+            if (n >= k && nakedSubset(unit, k, n, 0, 0, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean nakedSubset(int unit, int k, int n, int start, int depth, int union) {
+        if (depth == k) {
+            if (Integer.bitCount(union) != k) return false;
+            boolean progress = false;
+            for (int i = 0; i < size; i++) {
+                int cell = grid.unitCell(unit, i);
+                if (values[cell] == 0 && !isChosen(cell, k)) {
+                    progress |= eliminate(cell, union);
+                }
+            }
+            if (progress) {
+                for (int i = 0; i < k; i++) {
+                    pattern[patternCount++] = chosen[i];
+                }
+                eliminated(union);
+            }
+            return progress;
+        }
+        for (int i = start; i < n; i++) {
+            int next = union | candidates[buffer[i]];
+            if (Integer.bitCount(next) > k) continue;
+            chosen[depth] = buffer[i];
+            if (nakedSubset(unit, k, n, i + 1, depth + 1, next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isChosen(int value, int k) {
+        for (int i = 0; i < k; i++) {
+            if (chosen[i] == value) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks for k numbers that can only go into the same k cells of a unit.
+     * Those cells can't hold any other number.
+     */
+    private boolean hiddenSubset(int k) {
+        for (int unit = 0; unit < grid.unitCount(); unit++) {
+            int n = 0;
+            for (int num = 1; num <= size; num++) {
+                int positions = positionsInUnit(unit, 1 << num);
+                int count = Integer.bitCount(positions);
+                if (count >= 2 && count <= k) {
+                    buffer[n++] = num;
+                }
+            }
+            if (n >= k && hiddenSubset(unit, k, n, 0, 0, 0, 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hiddenSubset(int unit, int k, int n, int start, int depth, int positions, int digits) {
+        if (depth == k) {
+            if (Integer.bitCount(positions) != k) return false;
+            boolean progress = false;
+            for (int i = 0; i < size; i++) {
+                if ((positions & (1 << i)) != 0) {
+                    progress |= eliminate(grid.unitCell(unit, i), ~digits);
+                }
+            }
+            if (progress) {
+                for (int i = 0; i < size; i++) {
+                    if ((positions & (1 << i)) != 0) {
+                        pattern[patternCount++] = grid.unitCell(unit, i);
+                    }
+                }
+                eliminated(digits);
+            }
+            return progress;
+        }
+        for (int i = start; i < n; i++) {
+            int bit = 1 << buffer[i];
+            int next = positions | positionsInUnit(unit, bit);
+            if (Integer.bitCount(next) > k) continue;
+            if (hiddenSubset(unit, k, n, i + 1, depth + 1, next, digits | bit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Bitmask of the indices within the unit whose cells have the digit as candidate
+     */
+    private int positionsInUnit(int unit, int bit) {
+        int positions = 0;
+        for (int i = 0; i < size; i++) {
+            if ((candidates[grid.unitCell(unit, i)] & bit) != 0) {
+                positions |= 1 << i;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Looks for k rows in which a number can only go into the same k columns, or the other way around.
+     * The number then can't go anywhere else in those columns.
+     */
+    private boolean fish(int k) {
+        for (int num = 1; num <= size; num++) {
+            int bit = 1 << num;
+            for (int orientation = 0; orientation < 2; orientation++) {
+                //base lines are rows first, then columns. Cover lines are the other orientation
+                int baseOffset = orientation * size;
+                int n = 0;
+                for (int line = 0; line < size; line++) {
+                    lineMasks[line] = positionsInUnit(baseOffset + line, bit);
+                    int count = Integer.bitCount(lineMasks[line]);
+                    if (count >= 2 && count <= k) {
+                        buffer[n++] = line;
+                    }
+                }
+                if (n >= k && fish(k, bit, baseOffset, n, 0, 0, 0)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean fish(int k, int bit, int baseOffset, int n, int start, int depth, int cover) {
+        if (depth == k) {
+            if (Integer.bitCount(cover) != k) return false;
+            int coverOffset = size - baseOffset;
+            boolean progress = false;
+            for (int c = 0; c < size; c++) {
+                if ((cover & (1 << c)) == 0) continue;
+                //cell i of a cover line lies in base line i
+                for (int i = 0; i < size; i++) {
+                    if (!isChosen(i, k)) {
+                        progress |= eliminate(grid.unitCell(coverOffset + c, i), bit);
+                    }
+                }
+            }
+            if (progress) {
+                for (int i = 0; i < k; i++) {
+                    for (int c = 0; c < size; c++) {
+                        if ((lineMasks[chosen[i]] & (1 << c)) != 0) {
+                            pattern[patternCount++] = grid.unitCell(baseOffset + chosen[i], c);
+                        }
+                    }
+                }
+                eliminated(bit);
+            }
+            return progress;
+        }
+        for (int i = start; i < n; i++) {
+            int next = cover | lineMasks[buffer[i]];
+            if (Integer.bitCount(next) > k) continue;
+            chosen[depth] = buffer[i];
+            if (fish(k, bit, baseOffset, n, i + 1, depth + 1, next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
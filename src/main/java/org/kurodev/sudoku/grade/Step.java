@@ -0,0 +1,15 @@
+package org.kurodev.sudoku.grade;
+
+import java.util.List;
+
+/**
+ * A single deduction made by the {@link LogicalSolver}.
+ *
+ * @param technique The technique that was applied
+ * @param pattern   The cells that make up the pattern the deduction is based on
+ * @param changed   The cells that were filled or lost candidates
+ * @param digits    Bitmask of the numbers involved, bit n stands for the number n
+ * @param placement true if a number was placed, false if candidates were eliminated
+ */
+public record Step(Technique technique, List<Integer> pattern, List<Integer> changed, int digits, boolean placement) {
+}
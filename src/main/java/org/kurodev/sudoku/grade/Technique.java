@@ -0,0 +1,62 @@
+package org.kurodev.sudoku.grade;
+
+import org.kurodev.sudoku.Difficulty;
+
+/**
+ * Solving techniques known to the {@link LogicalSolver}, ordered from the simplest to the hardest.
+ */
+public enum Technique {
+    /**
+     * A cell has only one candidate left
+     */
+    NAKED_SINGLE(Difficulty.VERY_EASY),
+    /**
+     * A number can only go into one cell of a row, column or box
+     */
+    HIDDEN_SINGLE(Difficulty.EASY),
+    /**
+     * The candidates for a number within a box all lie on one line, or the candidates on a line all lie in one box
+     */
+    LOCKED_CANDIDATES(Difficulty.MEDIUM),
+    /**
+     * Two cells of a unit share the same two candidates
+     */
+    NAKED_PAIR(Difficulty.HARD),
+    /**
+     * Two numbers can only go into the same two cells of a unit
+     */
+    HIDDEN_PAIR(Difficulty.HARD),
+    /**
+     * Three cells of a unit only have three candidates between them
+     */
+    NAKED_TRIPLE(Difficulty.VERY_HARD),
+    /**
+     * Three numbers can only go into the same three cells of a unit
+     */
+    HIDDEN_TRIPLE(Difficulty.VERY_HARD),
+    /**
+     * The candidates for a number in two rows lie in the same two columns, or vice versa
+     */
+    X_WING(Difficulty.VERY_HARD),
+    /**
+     * The candidates for a number in three rows lie in the same three columns, or vice versa
+     */
+    SWORDFISH(Difficulty.HARDEST),
+    /**
+     * None of the techniques above make progress, the puzzle requires guessing
+     */
+    TRIAL_AND_ERROR(Difficulty.HARDEST);
+
+    private final Difficulty difficulty;
+
+    Technique(Difficulty difficulty) {
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * @return The difficulty of a puzzle that requires this technique
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+}
@@ -0,0 +1,199 @@
+package org.kurodev.sudoku.io;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuWithSolution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads 9x9 puzzles in the line format most other sudoku tools exchange:
+ * one puzzle per line as 81 characters, row by row, with {@code 1}-{@code 9} for clues and {@code .} or {@code 0} for blanks.
+ * <p>
+ * Empty lines and lines starting with {@code #} are skipped. Anything after the 81st character of a line,
+ * for example a solution column or a rating, is ignored. Both {@code \n} and {@code \r\n} line endings are accepted.
+ * <p>
+ * The channel is read through a fixed buffer and parsed byte by byte without creating a String per line,
+ * so files of any size are read in constant memory.
+ */
+public class LineFormatReader implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int CELLS = Grid.STANDARD.cells();
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] line = new byte[CELLS];
+    private int lineLength;
+    private long lineNumber;
+    private boolean eof;
+
+    public LineFormatReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    public static LineFormatReader open(Path file) throws IOException {
+        return new LineFormatReader(FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    /**
+     * Lazily reads every puzzle of the file. The file is closed when the stream is closed.
+     *
+     * @throws UncheckedIOException from the terminal operation if the file cannot be read or contains an invalid line
+     */
+    public static Stream<Sudoku> lines(Path file) throws IOException {
+        return open(file).stream();
+    }
+
+    /**
+     * Lazily reads every puzzle of the file as a fresh game of the given difficulty
+     *
+     * @see #lines(Path)
+     */
+    public static Stream<SudokuWithSolution> games(Path file, Difficulty difficulty) throws IOException {
+        return lines(file).map(puzzle -> new SudokuWithSolution(puzzle.copyState(), puzzle, difficulty));
+    }
+
+    /**
+     * @return The remaining puzzles as a sequential stream, which closes this reader when it is closed
+     */
+    public Stream<Sudoku> stream() {
+        Spliterator<Sudoku> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Sudoku> action) {
+                try {
+                    Sudoku next = next();
+                    if (next == null) {
+                        return false;
+                    }
+                    action.accept(next);
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * @return The next puzzle, or null if the end of the channel was reached
+     * @throws IOException if the next line is not a valid puzzle
+     */
+    public Sudoku next() throws IOException {
+        Sudoku out = Sudoku.ofSize(Grid.STANDARD);
+        return next(out) ? out : null;
+    }
+
+    /**
+     * Reads the next puzzle into an existing 9x9 sudoku, replacing all its numbers
+     *
+     * @return false if the end of the channel was reached, the sudoku is left unchanged then
+     * @throws IOException if the next line is not a valid puzzle
+     */
+    public boolean next(Sudoku into) throws IOException {
+        if (into.getGrid() != Grid.STANDARD) throw new IllegalArgumentException("The line format only holds 9x9 puzzles");
+        while (readLine()) {
+            if (lineLength == CELLS) {
+                for (int cell = 0; cell < CELLS; cell++) {
+                    into.setNum(line[cell], cell);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of the line the last puzzle was read from, starting at 1
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Parses the next line into {@link #line}. Skipped lines leave {@link #lineLength} at 0.
+     *
+     * @return false if there is no line left
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean skip = false;
+        boolean any = false;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                if (any) {
+                    lineNumber++;
+                    checkComplete();
+                }
+                return any;
+            }
+            byte b = buffer.get();
+            any = true;
+            if (b == '\n') {
+                lineNumber++;
+                checkComplete();
+                return true;
+            }
+            if (skip || b == '\r') {
+                continue;
+            }
+            if (lineLength == CELLS || (lineLength == 0 && b == '#')) {
+                //trailing columns and comments
+                skip = true;
+            } else if (b >= '1' && b <= '9') {
+                line[lineLength++] = (byte) (b - '0');
+            } else if (b == '0' || b == '.') {
+                line[lineLength++] = 0;
+            } else {
+                throw new IOException("Invalid character '" + (char) b + "' in line " + (lineNumber + 1));
+            }
+        }
+    }
+
+    private void checkComplete() throws IOException {
+        if (lineLength != 0 && lineLength != CELLS) {
+            throw new IOException("Line " + lineNumber + " has " + lineLength + " cells, expected " + CELLS);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
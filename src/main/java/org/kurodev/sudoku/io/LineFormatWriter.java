@@ -0,0 +1,128 @@
+package org.kurodev.sudoku.io;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuWithSolution;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+/**
+ * Writes 9x9 puzzles in the line format read by {@link LineFormatReader}, one puzzle of 81 characters per line.
+ * <p>
+ * Lines are collected in a fixed buffer that is written to the channel whenever it is full, so writing is constant in memory.
+ */
+public class LineFormatWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int LINE_LENGTH = Grid.STANDARD.cells() + 1;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE - BUFFER_SIZE % LINE_LENGTH);
+    private final byte blank;
+    private long count;
+
+    /**
+     * Writes blanks as {@code .}
+     */
+    public LineFormatWriter(WritableByteChannel channel) {
+        this(channel, '.');
+    }
+
+    /**
+     * @param blank The character to write for empty cells, {@code .} or {@code 0}
+     */
+    public LineFormatWriter(WritableByteChannel channel, char blank) {
+        if (blank != '.' && blank != '0') throw new IllegalArgumentException("Blank must be '.' or '0' but was '" + blank + "'");
+        this.channel = channel;
+        this.blank = (byte) blank;
+    }
+
+    /**
+     * Creates or replaces the file
+     */
+    public static LineFormatWriter create(Path file) throws IOException {
+        return new LineFormatWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    /**
+     * Writes every puzzle of the stream to the file, replacing its previous content
+     *
+     * @return The amount of puzzles written
+     */
+    public static long write(Path file, Stream<Sudoku> puzzles) throws IOException {
+        try (LineFormatWriter writer = create(file)) {
+            writer.writeAll(puzzles);
+            return writer.getCount();
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sudoku is not 9x9
+     */
+    public void write(Sudoku puzzle) throws IOException {
+        if (puzzle.getGrid() != Grid.STANDARD) throw new IllegalArgumentException("The line format only holds 9x9 puzzles");
+        if (buffer.remaining() < LINE_LENGTH) {
+            flush();
+        }
+        for (int cell = 0; cell < LINE_LENGTH - 1; cell++) {
+            int num = puzzle.getNum(cell);
+            buffer.put(num == 0 ? blank : (byte) ('0' + num));
+        }
+        buffer.put((byte) '\n');
+        count++;
+    }
+
+    /**
+     * Writes the clues of the game, the progress of the player is not part of the line format
+     */
+    public void write(SudokuWithSolution game) throws IOException {
+        write(game.getInitialGameState());
+    }
+
+    public void writeAll(Stream<Sudoku> puzzles) throws IOException {
+        try {
+            puzzles.forEachOrdered(puzzle -> {
+                try {
+                    write(puzzle);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return The amount of puzzles written so far
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the buffered lines to the channel
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
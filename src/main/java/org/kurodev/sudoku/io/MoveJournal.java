@@ -0,0 +1,325 @@
+package org.kurodev.sudoku.io;
+
+import org.kurodev.metrics.Metrics;
+import org.kurodev.metrics.PersistenceEvent;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Persists a running game move by move, so a crash loses at most the moves of the last few milliseconds.
+ * <p>
+ * The game is kept in a snapshot file, holding the game, its {@link org.kurodev.sudoku.MoveHistory} and a generation id,
+ * and a journal file next to it, holding the generation id of its snapshot followed by 5-byte records:
+ * the move as int and a check byte, so a record torn by a crash is recognized and ignored.
+ * Recording a move only queues it. A background thread writes all queued records with a single write and a single
+ * {@link FileChannel#force(boolean)}, applies them to its own copy of the game, and every {@code compactAfter} records
+ * writes that copy as new snapshot and starts an empty journal. Both files are replaced atomically,
+ * and a journal whose generation does not match the snapshot is ignored, so a crash at any point leaves a readable game.
+ * <p>
+ * Snapshots without journal are the format of {@link SudokuWithSolution#save}, so {@link #recover(Path)} also reads plain save files.
+ * <p>
+ * Every batch emits a {@link PersistenceEvent} while recording and, if enabled, is recorded in the {@link Metrics} {@code journal.commit}.
+ */
+public class MoveJournal implements AutoCloseable {
+    public static final int DEFAULT_COMPACT_AFTER = 1_000;
+    private static final int HEADER_SIZE = Long.BYTES;
+    private static final int RECORD_SIZE = Integer.BYTES + 1;
+    private static final int TYPE_SHIFT = 28;
+    private static final int PAYLOAD_MASK = (1 << TYPE_SHIFT) - 1;
+    private static final int PLAY = 0, UNDO = 1, REDO = 2, TURNS = 3;
+    private static final Entry CLOSE = new Entry(0, null, null);
+
+    private final Path snapshot;
+    private final Path journal;
+    private final int compactAfter;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    //only used on the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+    private SudokuWithSolution copy;
+    private FileChannel channel;
+    private int sinceSnapshot;
+
+    public MoveJournal(Path snapshot, SudokuWithSolution game) {
+        this(snapshot, game, DEFAULT_COMPACT_AFTER);
+    }
+
+    /**
+     * Starts journaling the game, replacing whatever is stored at the path
+     *
+     * @param snapshot     The snapshot file, the journal is stored next to it
+     * @param game         The game in its current state
+     * @param compactAfter The amount of records after which a new snapshot is written
+     */
+    public MoveJournal(Path snapshot, SudokuWithSolution game, int compactAfter) {
+        if (compactAfter < 1) throw new IllegalArgumentException("compactAfter must be at least 1 but was " + compactAfter);
+        this.snapshot = snapshot;
+        this.journal = journalOf(snapshot);
+        this.compactAfter = compactAfter;
+        reset(game);
+        writer = new Thread(this::run, "Journal Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static Path journalOf(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + ".journal");
+    }
+
+    /**
+     * Records that a number was placed with {@link SudokuWithSolution#play(int, int)}
+     */
+    public void play(int num, int cell) {
+        queue.add(new Entry(PLAY << TYPE_SHIFT | cell << 8 | num, null, null));
+    }
+
+    public void undo() {
+        queue.add(new Entry(UNDO << TYPE_SHIFT, null, null));
+    }
+
+    public void redo() {
+        queue.add(new Entry(REDO << TYPE_SHIFT, null, null));
+    }
+
+    public void turns(int turns) {
+        queue.add(new Entry(TURNS << TYPE_SHIFT | turns & PAYLOAD_MASK, null, null));
+    }
+
+    /**
+     * Replaces the journaled game, e.g. when a new game is started
+     */
+    public void reset(SudokuWithSolution game) {
+        queue.add(new Entry(0, serialize(game), null));
+    }
+
+    /**
+     * @return Completes once everything recorded so far is on disk
+     */
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Entry(0, null, done));
+        return done;
+    }
+
+    /**
+     * Writes the remaining records and a final snapshot, then stops the writer
+     */
+    @Override
+    public void close() {
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        List<CompletableFuture<Void>> synced = new ArrayList<>();
+        boolean closing = false;
+        while (!closing) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            //group commit, everything that queued up while the last batch was written goes into this one
+            queue.drainTo(batch);
+            PersistenceEvent event = Metrics.isRecording() ? new PersistenceEvent() : null;
+            if (event != null) event.begin();
+            long start = System.nanoTime();
+            boolean written = false;
+            try {
+                for (Entry entry : batch) {
+                    if (entry == CLOSE) {
+                        closing = true;
+                    } else if (entry.game() != null) {
+                        copy = deserialize(entry.game());
+                        compact();
+                    } else if (entry.done() != null) {
+                        synced.add(entry.done());
+                    } else {
+                        append(entry.record());
+                        apply(copy, entry.record());
+                    }
+                }
+                if (closing || sinceSnapshot >= compactAfter) {
+                    compact();
+                } else {
+                    writeBuffer();
+                    channel.force(false);
+                }
+                synced.forEach(done -> done.complete(null));
+                written = true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to write game journal");
+                e.printStackTrace();
+                synced.forEach(done -> done.completeExceptionally(e));
+            }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.operation = "journal";
+                    event.path = journal.toString();
+                    event.records = batch.size();
+                    event.succeeded = written;
+                    event.commit();
+                }
+            }
+            Metrics.recordSince("journal.commit", start);
+            batch.clear();
+            synced.clear();
+        }
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void append(int record) throws IOException {
+        if (buffer.remaining() < RECORD_SIZE) {
+            writeBuffer();
+        }
+        buffer.putInt(record).put(checksum(record));
+        sinceSnapshot++;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the copy of the game as new snapshot and starts an empty journal for it
+     */
+    private void compact() throws IOException {
+        long generation = ThreadLocalRandom.current().nextLong();
+        byte[] game = serialize(copy);
+        writeAtomically(snapshot, ByteBuffer.allocate(game.length + HEADER_SIZE).put(game).putLong(generation).flip());
+        //until the new journal is in place the old one does not match the snapshot anymore, so it is ignored
+        writeAtomically(journal, ByteBuffer.allocate(HEADER_SIZE).putLong(generation).flip());
+        if (channel != null) channel.close();
+        channel = FileChannel.open(journal, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        //the snapshot already contains the buffered records
+        buffer.clear();
+        sinceSnapshot = 0;
+    }
+
+    private static void writeAtomically(Path target, ByteBuffer content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+            out.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the snapshot and replays the journal on top of it
+     *
+     * @return The game as it was after the last record that made it to disk, or null if there is no snapshot
+     */
+    public static SudokuWithSolution recover(Path snapshot) throws IOException {
+        if (!Files.exists(snapshot)) {
+            return null;
+        }
+        SudokuWithSolution game;
+        long generation;
+        try (InputStream in = Files.newInputStream(snapshot)) {
+            game = SudokuFactory.load(in);
+            game.getHistory().read(in, game.getGame().getGrid());
+            byte[] header = in.readNBytes(HEADER_SIZE);
+            if (header.length != HEADER_SIZE) {
+                //a plain save file
+                return game;
+            }
+            generation = ByteBuffer.wrap(header).getLong();
+        }
+        Path journal = journalOf(snapshot);
+        if (!Files.exists(journal)) {
+            return game;
+        }
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(journal));
+        if (log.remaining() < HEADER_SIZE || log.getLong() != generation) {
+            return game;
+        }
+        while (log.remaining() >= RECORD_SIZE) {
+            int record = log.getInt();
+            if (log.get() != checksum(record)) {
+                //torn by a crash, nothing after it was committed
+                break;
+            }
+            apply(game, record);
+        }
+        return game;
+    }
+
+    private static void apply(SudokuWithSolution game, int record) {
+        int payload = record & PAYLOAD_MASK;
+        switch (record >>> TYPE_SHIFT) {
+            case PLAY -> game.play(payload & 0xFF, payload >>> 8);
+            case UNDO -> game.undo();
+            case REDO -> game.redo();
+            case TURNS -> game.setTurns(payload);
+            default -> throw new IllegalArgumentException("Invalid journal record " + Integer.toHexString(record));
+        }
+    }
+
+    private static byte checksum(int record) {
+        return (byte) (record ^ record >>> 8 ^ record >>> 16 ^ record >>> 24 ^ 0xA5);
+    }
+
+    private static byte[] serialize(SudokuWithSolution game) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            game.save(out);
+            game.getHistory().write(out, game.getGame().getGrid());
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SudokuWithSolution deserialize(byte[] bytes) {
+        try {
+            InputStream in = new ByteArrayInputStream(bytes);
+            SudokuWithSolution game = SudokuFactory.load(in);
+            game.getHistory().read(in, game.getGame().getGrid());
+            return game;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A queued record, a new game to journal, or a sync request
+     */
+    private record Entry(int record, byte[] game, CompletableFuture<Void> done) {
+    }
+}
@@ -0,0 +1,334 @@
+package org.kurodev.sudoku.io;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuWithSolution;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only access to a puzzle bank file, a large collection of puzzles sorted by difficulty.
+ * <p>
+ * The file starts with a header of {@value #HEADER_SIZE} bytes:
+ * <pre>
+ * int   magic ("SDKB")
+ * short format version
+ * short record size
+ * 8 bytes reserved
+ * two commit slots of 32 bytes each:
+ *   long sequence, 0 if the slot was never written
+ *   long offset of the index
+ *   int  amount of segments in the index
+ *   int  amount of difficulties
+ *   int  CRC32 of the index
+ *   int  CRC32 of the fields above
+ * </pre>
+ * followed by segments of fixed-size records of a single difficulty, each holding the puzzle and its solution
+ * in the format of {@link Sudoku#writeState}. The index lists every segment as int difficulty ordinal,
+ * long offset and long amount of records. The puzzles of a difficulty are its segments in index order.
+ * <p>
+ * {@link PuzzleBankWriter} appends segments and a new index behind the last committed index,
+ * then commits by writing the slot that is not in use. The valid slot with the highest sequence is used,
+ * so a crash while writing leaves the bank at its last commit.
+ * Records are read through memory-mapped windows, so banks larger than the heap can be served in constant time.
+ * <p>
+ * Reading is thread-safe.
+ */
+public class PuzzleBank implements AutoCloseable {
+    static final int MAGIC = 0x53444B42;
+    static final short FORMAT_VERSION = 2;
+    static final int STATE_SIZE = SudokuCodec.STANDARD_STATE_SIZE;
+    static final int RECORD_SIZE = 2 * STATE_SIZE;
+    static final int HEADER_SIZE = 128;
+    private static final int SLOT_OFFSET = 16;
+    private static final int SLOT_SIZE = 32;
+    //everything but the checksum of the slot itself
+    private static final int SLOT_CHECKED_SIZE = SLOT_SIZE - Integer.BYTES;
+    private static final int SEGMENT_ENTRY_SIZE = Integer.BYTES + 2 * Long.BYTES;
+    private static final int MAX_SEGMENTS = Integer.MAX_VALUE / SEGMENT_ENTRY_SIZE;
+    //mapped buffers are int-indexed, so the records are mapped in windows that overlap by one record,
+    //which puts every record completely into one window
+    private static final long WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final long WINDOW_STRIDE = WINDOW_SIZE - RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] windows;
+    private final Map<Difficulty, Section> sections = new EnumMap<>(Difficulty.class);
+
+    private PuzzleBank(FileChannel channel) throws IOException {
+        this.channel = channel;
+        Layout layout = readLayout(channel);
+        windows = map(layout.dataEnd());
+        for (Difficulty difficulty : Difficulty.values()) {
+            List<Segment> own = layout.segments().stream()
+                    .filter(segment -> segment.difficulty() == difficulty && segment.count() > 0)
+                    .toList();
+            long[] starts = new long[own.size()];
+            long[] offsets = new long[own.size()];
+            long count = 0;
+            for (int i = 0; i < own.size(); i++) {
+                starts[i] = count;
+                offsets[i] = own.get(i).offset();
+                count += own.get(i).count();
+            }
+            sections.put(difficulty, new Section(starts, offsets, count));
+        }
+    }
+
+    public static PuzzleBank open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new PuzzleBank(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private MappedByteBuffer[] map(long dataEnd) throws IOException {
+        long data = dataEnd - HEADER_SIZE;
+        int windowCount = data == 0 ? 0 : (int) ((data - 1) / WINDOW_STRIDE + 1);
+        MappedByteBuffer[] out = new MappedByteBuffer[windowCount];
+        for (int i = 0; i < windowCount; i++) {
+            long start = HEADER_SIZE + i * WINDOW_STRIDE;
+            out[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, dataEnd - start));
+        }
+        return out;
+    }
+
+    /**
+     * @return The amount of puzzles of the given difficulty in the bank
+     */
+    public long count(Difficulty difficulty) {
+        return sections.get(difficulty).count();
+    }
+
+    /**
+     * Reads a puzzle as a fresh game
+     *
+     * @param index The index of the puzzle within its difficulty
+     */
+    public SudokuWithSolution get(Difficulty difficulty, long index) {
+        Sudoku puzzle = readState(difficulty, index, 0);
+        return new SudokuWithSolution(puzzle.copyState(), puzzle, difficulty);
+    }
+
+    /**
+     * Reads the solution of a puzzle
+     *
+     * @param index The index of the puzzle within its difficulty
+     */
+    public Sudoku getSolution(Difficulty difficulty, long index) {
+        return readState(difficulty, index, STATE_SIZE);
+    }
+
+    /**
+     * Reads a random puzzle of the given difficulty as a fresh game
+     *
+     * @throws IllegalStateException if the bank has no puzzle of that difficulty
+     */
+    public SudokuWithSolution random(Difficulty difficulty) {
+        return random(difficulty, ThreadLocalRandom.current());
+    }
+
+    /**
+     * @see #random(Difficulty)
+     */
+    public SudokuWithSolution random(Difficulty difficulty, Random rng) {
+        long count = count(difficulty);
+        if (count == 0) throw new IllegalStateException("Puzzle bank has no puzzles of difficulty " + difficulty);
+        return get(difficulty, rng.nextLong(count));
+    }
+
+    private Sudoku readState(Difficulty difficulty, long index, int offsetInRecord) {
+        Section section = sections.get(difficulty);
+        if (index < 0 || index >= section.count())
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for " + section.count() + " puzzles");
+        int segment = Arrays.binarySearch(section.starts(), index);
+        if (segment < 0) {
+            //the segment starting before the index
+            segment = -segment - 2;
+        }
+        long position = section.offsets()[segment] + (index - section.starts()[segment]) * RECORD_SIZE + offsetInRecord - HEADER_SIZE;
+        int window = (int) (position / WINDOW_STRIDE);
+        return SudokuCodec.decode(windows[window].slice((int) (position - window * WINDOW_STRIDE), STATE_SIZE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes the header of a new, empty bank and commits an empty index
+     */
+    static Layout create(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putShort(FORMAT_VERSION).putShort((short) RECORD_SIZE);
+        header.clear();
+        writeFully(channel, header, 0);
+        //slot 1 counts as the one in use, so the first commit goes to slot 0
+        return commit(channel, new Layout(0, 1, HEADER_SIZE, HEADER_SIZE, List.of()), List.of(), HEADER_SIZE);
+    }
+
+    /**
+     * Reads the header and the index of the last commit
+     *
+     * @throws IOException if the file is not a puzzle bank of this version or neither commit is intact
+     */
+    static Layout readLayout(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) throw new IOException("Not a puzzle bank");
+        short version = header.getShort();
+        if (version != FORMAT_VERSION) throw new IOException("Unsupported puzzle bank version " + version);
+        short recordSize = header.getShort();
+        if (recordSize != RECORD_SIZE) throw new IOException("Unsupported record size " + recordSize);
+
+        IOException failure = new IOException("Puzzle bank has no intact commit");
+        Layout newest = null;
+        for (int slot = 0; slot < 2; slot++) {
+            try {
+                Layout layout = readSlot(channel, header, slot);
+                if (layout != null && (newest == null || layout.sequence() > newest.sequence())) {
+                    newest = layout;
+                }
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        if (newest == null) throw failure;
+        return newest;
+    }
+
+    /**
+     * @return The commit of the slot, or null if the slot was never written
+     */
+    private static Layout readSlot(FileChannel channel, ByteBuffer header, int slot) throws IOException {
+        int base = SLOT_OFFSET + slot * SLOT_SIZE;
+        long sequence = header.getLong(base);
+        if (sequence == 0) return null;
+        if (checksum(header, base, SLOT_CHECKED_SIZE) != header.getInt(base + SLOT_CHECKED_SIZE))
+            throw new IOException("Commit slot " + slot + " is corrupt");
+        long indexOffset = header.getLong(base + 8);
+        int segmentCount = header.getInt(base + 16);
+        int difficulties = header.getInt(base + 20);
+        if (difficulties < 0 || difficulties > Difficulty.values().length)
+            throw new IOException("Puzzle bank has " + difficulties + " difficulties, but only " + Difficulty.values().length + " are known");
+        if (segmentCount < 0 || segmentCount > MAX_SEGMENTS || indexOffset < HEADER_SIZE
+                || indexOffset + (long) segmentCount * SEGMENT_ENTRY_SIZE > channel.size())
+            throw new IOException("Index of commit slot " + slot + " exceeds the file size");
+
+        ByteBuffer index = ByteBuffer.allocate(segmentCount * SEGMENT_ENTRY_SIZE);
+        readFully(channel, index, indexOffset);
+        if (checksum(index, 0, index.capacity()) != header.getInt(base + 24))
+            throw new IOException("Index of commit slot " + slot + " is corrupt");
+        index.flip();
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int ordinal = index.getInt();
+            long offset = index.getLong();
+            long count = index.getLong();
+            if (ordinal < 0 || ordinal >= difficulties)
+                throw new IOException("Segment " + i + " has the unknown difficulty " + ordinal);
+            if (offset < HEADER_SIZE || count < 0 || count > (indexOffset - offset) / RECORD_SIZE)
+                throw new IOException("Segment " + i + " lies outside of the records");
+            segments.add(new Segment(Difficulty.values()[ordinal], offset, count));
+        }
+        return new Layout(sequence, slot, indexOffset, indexOffset + index.capacity(), List.copyOf(segments));
+    }
+
+    /**
+     * Writes the index behind the records and then points the unused slot at it.
+     * The index is forced to disk before the slot, so a slot never points to an incomplete index
+     *
+     * @param previous    The last commit
+     * @param segments    All segments of the bank
+     * @param indexOffset The end of the records
+     * @return The new commit
+     */
+    static Layout commit(FileChannel channel, Layout previous, List<Segment> segments, long indexOffset) throws IOException {
+        if (segments.size() > MAX_SEGMENTS) throw new IOException("Too many segments: " + segments.size());
+        ByteBuffer index = ByteBuffer.allocate(segments.size() * SEGMENT_ENTRY_SIZE);
+        for (Segment segment : segments) {
+            index.putInt(segment.difficulty().ordinal()).putLong(segment.offset()).putLong(segment.count());
+        }
+        int indexChecksum = checksum(index, 0, index.capacity());
+        index.flip();
+        writeFully(channel, index, indexOffset);
+        channel.force(true);
+
+        int slot = 1 - previous.slot();
+        long sequence = previous.sequence() + 1;
+        ByteBuffer entry = ByteBuffer.allocate(SLOT_SIZE);
+        entry.putLong(sequence).putLong(indexOffset).putInt(segments.size()).putInt(Difficulty.values().length);
+        entry.putInt(indexChecksum);
+        entry.putInt(checksum(entry, 0, SLOT_CHECKED_SIZE));
+        entry.clear();
+        writeFully(channel, entry, SLOT_OFFSET + slot * SLOT_SIZE);
+        channel.force(true);
+        return new Layout(sequence, slot, indexOffset, indexOffset + index.capacity(), List.copyOf(segments));
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), offset, length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Reads at the position until the buffer is full, since a single read may return fewer bytes
+     *
+     * @throws EOFException if the file ends first
+     */
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Puzzle bank is truncated, " + buffer.remaining() + " bytes missing");
+            }
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * A run of records of one difficulty
+     */
+    record Segment(Difficulty difficulty, long offset, long count) {
+        long end() {
+            return offset + count * RECORD_SIZE;
+        }
+    }
+
+    /**
+     * A commit of a bank
+     *
+     * @param slot    The header slot holding the commit
+     * @param dataEnd The end of the records, where the index starts
+     * @param end     The end of the index, everything behind it is not committed
+     */
+    record Layout(long sequence, int slot, long dataEnd, long end, List<Segment> segments) {
+    }
+
+    private record Section(long[] starts, long[] offsets, long count) {
+    }
+}
@@ -0,0 +1,142 @@
+package org.kurodev.sudoku.io;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.SolveResult;
+import org.kurodev.sudoku.SudokuSolver;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Appends puzzles to a {@link PuzzleBank} file in place, creating it if it does not exist.
+ * <p>
+ * Records are buffered per difficulty, and every full buffer is written as a segment behind the last committed index.
+ * On {@link #close()} the remaining buffers are written, followed by a new index of all segments, which is then committed
+ * in the header. The existing records are never read or moved, so appending costs I/O for the new puzzles and the index only.
+ * If the writer is not closed, e.g. after a crash, the bank stays at its last commit,
+ * and the next writer overwrites the uncommitted records.
+ * <p>
+ * The solution of every puzzle is computed when it is appended, so puzzles without a solution are rejected.
+ * Only one writer can have a bank open at a time.
+ */
+public class PuzzleBankWriter implements AutoCloseable {
+    //about 12k records per buffer, so even banks of millions of puzzles have only a few hundred segments
+    private static final int BUFFER_RECORDS = (1 << 20) / PuzzleBank.RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final Map<Difficulty, ByteBuffer> buffers = new EnumMap<>(Difficulty.class);
+    private final List<PuzzleBank.Segment> segments;
+    private final SudokuSolver solver = new DancingLinksSolver();
+    private PuzzleBank.Layout layout;
+    //where the next segment is written
+    private long position;
+    private boolean closed;
+
+    public PuzzleBankWriter(Path bank) throws IOException {
+        channel = FileChannel.open(bank, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            //released when the channel is closed
+            if (channel.tryLock() == null) {
+                throw new IOException("Puzzle bank " + bank + " is already being written");
+            }
+            layout = channel.size() == 0 ? PuzzleBank.create(channel) : PuzzleBank.readLayout(channel);
+            segments = new ArrayList<>(layout.segments());
+            position = layout.end();
+            //drops the uncommitted records of a writer that was not closed
+            channel.truncate(position);
+        } catch (OverlappingFileLockException e) {
+            channel.close();
+            throw new IOException("Puzzle bank " + bank + " is already being written", e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the initial state of the game to the bank
+     *
+     * @throws IllegalArgumentException if the puzzle has no solution or is not 9x9
+     */
+    public synchronized void append(SudokuWithSolution puzzle) throws IOException {
+        if (closed) throw new IllegalStateException("Writer is closed");
+        if (puzzle.getInitialGameState().getGrid() != Grid.STANDARD) {
+            throw new IllegalArgumentException("Puzzle banks only hold 9x9 puzzles");
+        }
+        SolveResult result = solver.solve(puzzle.getInitialGameState());
+        if (!result.isSolved()) {
+            throw new IllegalArgumentException("Puzzle has no solution:\n" + puzzle.getInitialGameState());
+        }
+        ByteBuffer buffer = buffers.computeIfAbsent(puzzle.difficulty(), d -> ByteBuffer.allocate(BUFFER_RECORDS * PuzzleBank.RECORD_SIZE));
+        SudokuCodec.encode(puzzle.getInitialGameState(), buffer);
+        SudokuCodec.encode(result.solution(), buffer);
+        if (!buffer.hasRemaining()) {
+            writeSegment(puzzle.difficulty(), buffer);
+        }
+    }
+
+    /**
+     * Appends every puzzle of the stream, for example the output of {@link org.kurodev.sudoku.SudokuFactory#stream}
+     */
+    public void appendAll(Stream<SudokuWithSolution> puzzles) throws IOException {
+        try {
+            puzzles.forEachOrdered(puzzle -> {
+                try {
+                    append(puzzle);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeSegment(Difficulty difficulty, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        long count = buffer.remaining() / PuzzleBank.RECORD_SIZE;
+        if (count > 0) {
+            PuzzleBank.writeFully(channel, buffer, position);
+            int last = segments.size() - 1;
+            if (last >= 0 && segments.get(last).difficulty() == difficulty && segments.get(last).end() == position) {
+                //continues the previous segment, e.g. when a whole batch has the same difficulty
+                PuzzleBank.Segment previous = segments.get(last);
+                segments.set(last, new PuzzleBank.Segment(difficulty, previous.offset(), previous.count() + count));
+            } else {
+                segments.add(new PuzzleBank.Segment(difficulty, position, count));
+            }
+            position += count * PuzzleBank.RECORD_SIZE;
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered records and commits them
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try (channel) {
+            for (Map.Entry<Difficulty, ByteBuffer> buffer : buffers.entrySet()) {
+                writeSegment(buffer.getKey(), buffer.getValue());
+            }
+            if (position != layout.end()) {
+                layout = PuzzleBank.commit(channel, layout, segments, position);
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package org.kurodev.sudoku.io;
+
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.MoveHistory;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuWithSolution;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Encodes sudokus directly into and out of {@link ByteBuffer}s, heap or direct, without allocating in between.
+ * <p>
+ * A 9x9 state takes {@value #STANDARD_STATE_SIZE} bytes: the first cell as a whole byte,
+ * then the rest of the first column and every row without its first cell, two cells per byte.
+ * States of other sizes start with a marker byte holding the box size, followed by the cells in 5-bit blocks.
+ * A game is the turn as int and the difficulty ordinal as byte, followed by the state of the game and of its initial state.
+ * A {@link MoveHistory} is the amount of moves and the amount of applied moves as unsigned shorts, followed by the moves,
+ * oldest first, in 2 bytes each for 9x9 and 3 bytes for other sizes.
+ * <p>
+ * Encoding and decoding start at the position of the buffer and advance it past the written or read bytes.
+ * If the buffer does not hold enough bytes, nothing is consumed, so a decode can be retried once more bytes arrived
+ * from a channel. Use {@link #stateSize(ByteBuffer)} or {@link #gameSize(ByteBuffer)} to find out how many are needed.
+ */
+public final class SudokuCodec {
+    public static final int STANDARD_STATE_SIZE = 41;
+    //turn and difficulty in front of the two states of a game
+    private static final int GAME_HEADER_SIZE = 5;
+    //first byte of a state that is not 9x9, the lower bits hold the box size
+    private static final int SIZED_STATE_MARKER = 0x80;
+    private static final int SIZED_STATE_BITS = 5;
+    private static final int SIZED_STATE_MASK = (1 << SIZED_STATE_BITS) - 1;
+    public static final int HISTORY_HEADER_SIZE = 4;
+    //7 bits cell, 4 bits old and new number
+    private static final int STANDARD_MOVE_SIZE = 2;
+    //10 bits cell, 5 bits old and new number
+    private static final int SIZED_MOVE_SIZE = 3;
+
+    private SudokuCodec() {
+    }
+
+    /**
+     * @return The amount of bytes a state of the given size takes
+     */
+    public static int stateSize(Grid grid) {
+        if (grid == Grid.STANDARD) {
+            return STANDARD_STATE_SIZE;
+        }
+        return 1 + (grid.cells() * SIZED_STATE_BITS + 7) / 8;
+    }
+
+    /**
+     * @return The amount of bytes the state at the position of the buffer takes, or -1 if the buffer is empty
+     * @throws IllegalArgumentException if the buffer does not start with a state
+     */
+    public static int stateSize(ByteBuffer in) {
+        if (!in.hasRemaining()) {
+            return -1;
+        }
+        return stateSize(gridOf(in.get(in.position())));
+    }
+
+    /**
+     * @return The size of the field stored in a state that starts with the given byte
+     * @throws IllegalArgumentException if no state starts with that byte
+     */
+    public static Grid gridOf(byte firstByte) {
+        if ((firstByte & SIZED_STATE_MARKER) == 0) {
+            return Grid.STANDARD;
+        }
+        return Grid.of(firstByte & ~SIZED_STATE_MARKER & 0xFF);
+    }
+
+    /**
+     * @throws BufferOverflowException if the buffer has less than {@link #stateSize(Grid)} bytes remaining
+     */
+    public static void encode(Sudoku sudoku, ByteBuffer out) {
+        Grid grid = sudoku.getGrid();
+        int size = stateSize(grid);
+        if (out.remaining() < size) throw new BufferOverflowException();
+        int pos = out.position();
+        if (grid == Grid.STANDARD) {
+            encodeStandard(sudoku, out, pos);
+        } else {
+            encodeSized(sudoku, out, pos);
+        }
+        out.position(pos + size);
+    }
+
+    private static void encodeStandard(Sudoku sudoku, ByteBuffer out, int pos) {
+        final int size = Sudoku.FIELD_SIZE;
+        out.put(pos++, (byte) sudoku.getNum(0));
+        //the rest of the first column
+        for (int y = 1; y < size; y += 2) {
+            out.put(pos++, (byte) (sudoku.getNum(y * size) << 4 | sudoku.getNum((y + 1) * size)));
+        }
+        //every row without its first cell
+        for (int y = 0; y < size; y++) {
+            for (int x = 1; x < size; x += 2) {
+                int cell = y * size + x;
+                out.put(pos++, (byte) (sudoku.getNum(cell) << 4 | sudoku.getNum(cell + 1)));
+            }
+        }
+    }
+
+    private static void encodeSized(Sudoku sudoku, ByteBuffer out, int pos) {
+        out.put(pos++, (byte) (SIZED_STATE_MARKER | sudoku.getGrid().boxSize()));
+        int buffer = 0;
+        int bits = 0;
+        int cells = sudoku.getGrid().cells();
+        for (int cell = 0; cell < cells; cell++) {
+            buffer = (buffer << SIZED_STATE_BITS) | sudoku.getNum(cell);
+            bits += SIZED_STATE_BITS;
+            if (bits >= 8) {
+                bits -= 8;
+                out.put(pos++, (byte) (buffer >>> bits));
+                buffer &= (1 << bits) - 1;
+            }
+        }
+        if (bits > 0) {
+            out.put(pos, (byte) (buffer << (8 - bits)));
+        }
+    }
+
+    /**
+     * Reads a state of any size into a new sudoku
+     *
+     * @throws BufferUnderflowException if the buffer does not hold the complete state
+     * @throws IllegalArgumentException if the buffer does not hold a valid state
+     */
+    public static Sudoku decode(ByteBuffer in) {
+        if (!in.hasRemaining()) throw new BufferUnderflowException();
+        Sudoku out = Sudoku.ofSize(gridOf(in.get(in.position())));
+        decode(in, out);
+        return out;
+    }
+
+    /**
+     * Reads a state into an existing sudoku, replacing all its numbers
+     *
+     * @throws BufferUnderflowException if the buffer does not hold the complete state
+     * @throws IllegalArgumentException if the buffer does not hold a valid state of the same size as the sudoku
+     */
+    public static void decode(ByteBuffer in, Sudoku into) {
+        int size = stateSize(in);
+        if (size < 0 || in.remaining() < size) throw new BufferUnderflowException();
+        Grid grid = gridOf(in.get(in.position()));
+        if (grid != into.getGrid()) {
+            throw new IllegalArgumentException("State of a " + grid.size() + "x" + grid.size()
+                    + " sudoku cannot be read into a " + into.getSize() + "x" + into.getSize() + " sudoku");
+        }
+        int pos = in.position();
+        //validate first, so an invalid state does not leave the sudoku half overwritten
+        if (grid == Grid.STANDARD) {
+            forEachStandardCell(in, pos, into, false);
+            forEachStandardCell(in, pos, into, true);
+        } else {
+            decodeSized(in, pos, into, false);
+            decodeSized(in, pos, into, true);
+        }
+        in.position(pos + size);
+    }
+
+    private static void forEachStandardCell(ByteBuffer in, int pos, Sudoku into, boolean apply) {
+        final int size = Sudoku.FIELD_SIZE;
+        put(into, 0, in.get(pos++), apply);
+        for (int y = 1; y < size; y += 2) {
+            byte b = in.get(pos++);
+            put(into, y * size, (b >> 4) & 0xF, apply);
+            put(into, (y + 1) * size, b & 0xF, apply);
+        }
+        for (int y = 0; y < size; y++) {
+            for (int x = 1; x < size; x += 2) {
+                int cell = y * size + x;
+                byte b = in.get(pos++);
+                put(into, cell, (b >> 4) & 0xF, apply);
+                put(into, cell + 1, b & 0xF, apply);
+            }
+        }
+    }
+
+    private static void decodeSized(ByteBuffer in, int pos, Sudoku into, boolean apply) {
+        pos++;
+        int buffer = 0;
+        int bits = 0;
+        int cells = into.getGrid().cells();
+        for (int cell = 0; cell < cells; cell++) {
+            if (bits < SIZED_STATE_BITS) {
+                buffer = (buffer << 8) | (in.get(pos++) & 0xFF);
+                bits += 8;
+            }
+            bits -= SIZED_STATE_BITS;
+            put(into, cell, (buffer >>> bits) & SIZED_STATE_MASK, apply);
+            buffer &= (1 << bits) - 1;
+        }
+    }
+
+    private static void put(Sudoku into, int cell, int num, boolean apply) {
+        if (apply) {
+            into.setNum(num, cell);
+        } else if (num < 0 || num > into.getSize()) {
+            throw new IllegalArgumentException("Invalid number " + num + " in state of cell " + cell);
+        }
+    }
+
+    /**
+     * @return The amount of bytes a game of the given size takes
+     */
+    public static int gameSize(Grid grid) {
+        return GAME_HEADER_SIZE + 2 * stateSize(grid);
+    }
+
+    /**
+     * @return The amount of bytes the game at the position of the buffer takes,
+     * or -1 if the buffer does not hold enough bytes to tell
+     * @throws IllegalArgumentException if the buffer does not start with a game
+     */
+    public static int gameSize(ByteBuffer in) {
+        if (in.remaining() <= GAME_HEADER_SIZE) {
+            return -1;
+        }
+        return gameSize(gridOf(in.get(in.position() + GAME_HEADER_SIZE)));
+    }
+
+    /**
+     * @throws BufferOverflowException if the buffer has less than {@link #gameSize(Grid)} bytes remaining
+     */
+    public static void encode(SudokuWithSolution game, ByteBuffer out) {
+        if (out.remaining() < gameSize(game.getGame().getGrid())) throw new BufferOverflowException();
+        out.putInt(game.getTurns());
+        out.put((byte) game.difficulty().ordinal());
+        encode(game.getGame(), out);
+        encode(game.getInitialGameState(), out);
+    }
+
+    /**
+     * @throws BufferUnderflowException if the buffer does not hold the complete game
+     * @throws IllegalArgumentException if the buffer does not hold a valid game
+     */
+    public static SudokuWithSolution decodeGame(ByteBuffer in) {
+        int size = gameSize(in);
+        if (size < 0 || in.remaining() < size) throw new BufferUnderflowException();
+        int pos = in.position();
+        try {
+            int turn = in.getInt();
+            Difficulty difficulty = Difficulty.valueOf(in.get() & 0xFF);
+            Sudoku game = decode(in);
+            Sudoku initial = Sudoku.ofSize(game.getGrid());
+            decode(in, initial);
+            return new SudokuWithSolution(game, initial, difficulty, turn);
+        } catch (RuntimeException e) {
+            in.position(pos);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The amount of bytes a single move of a history takes for the given size
+     */
+    public static int moveSize(Grid grid) {
+        return grid == Grid.STANDARD ? STANDARD_MOVE_SIZE : SIZED_MOVE_SIZE;
+    }
+
+    /**
+     * @return The amount of bytes the history takes
+     */
+    public static int historySize(MoveHistory history, Grid grid) {
+        return HISTORY_HEADER_SIZE + history.size() * moveSize(grid);
+    }
+
+    /**
+     * @param grid The size of the game the moves belong to
+     * @throws BufferOverflowException if the buffer has less than {@link #historySize(MoveHistory, Grid)} bytes remaining
+     */
+    public static void encode(MoveHistory history, Grid grid, ByteBuffer out) {
+        if (out.remaining() < historySize(history, grid)) throw new BufferOverflowException();
+        out.putShort((short) history.size());
+        out.putShort((short) history.position());
+        for (int i = 0; i < history.size(); i++) {
+            int move = history.get(i);
+            int cell = MoveHistory.cellOf(move), oldNum = MoveHistory.oldNumOf(move), newNum = MoveHistory.newNumOf(move);
+            if (grid == Grid.STANDARD) {
+                out.putShort((short) (cell << 8 | oldNum << 4 | newNum));
+            } else {
+                int packed = cell << 2 * SIZED_STATE_BITS | oldNum << SIZED_STATE_BITS | newNum;
+                out.put((byte) (packed >>> 16)).putShort((short) packed);
+            }
+        }
+    }
+
+    /**
+     * Reads a history, replacing the moves of the given one
+     *
+     * @param grid The size of the game the moves belong to
+     * @throws BufferUnderflowException if the buffer does not hold the complete history
+     * @throws IllegalArgumentException if the buffer does not hold a valid history
+     */
+    public static void decode(ByteBuffer in, Grid grid, MoveHistory into) {
+        if (in.remaining() < HISTORY_HEADER_SIZE) throw new BufferUnderflowException();
+        int pos = in.position();
+        int count = in.getShort(pos) & 0xFFFF;
+        int position = in.getShort(pos + 2) & 0xFFFF;
+        int moveSize = moveSize(grid);
+        if (in.remaining() < HISTORY_HEADER_SIZE + count * moveSize) throw new BufferUnderflowException();
+        int[] moves = new int[count];
+        int offset = pos + HISTORY_HEADER_SIZE;
+        for (int i = 0; i < count; i++, offset += moveSize) {
+            int cell, oldNum, newNum;
+            if (grid == Grid.STANDARD) {
+                int packed = in.getShort(offset) & 0xFFFF;
+                cell = packed >>> 8;
+                oldNum = packed >>> 4 & 0xF;
+                newNum = packed & 0xF;
+            } else {
+                int packed = (in.get(offset) & 0xFF) << 16 | in.getShort(offset + 1) & 0xFFFF;
+                cell = packed >>> 2 * SIZED_STATE_BITS;
+                oldNum = packed >>> SIZED_STATE_BITS & SIZED_STATE_MASK;
+                newNum = packed & SIZED_STATE_MASK;
+            }
+            if (cell >= grid.cells() || oldNum > grid.size() || newNum > grid.size())
+                throw new IllegalArgumentException("Invalid move " + i + " of history");
+            moves[i] = MoveHistory.pack(cell, oldNum, newNum);
+        }
+        into.restore(moves, position);
+        in.position(offset);
+    }
+
+    /**
+     * Reads from the channel until the buffer is full, since a single read may return fewer bytes
+     *
+     * @throws EOFException if the channel ends first
+     */
+    public static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException(buffer.remaining() + " bytes missing");
+            }
+        }
+    }
+}
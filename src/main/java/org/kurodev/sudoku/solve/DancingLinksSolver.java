@@ -0,0 +1,290 @@
+package org.kurodev.sudoku.solve;
+
+import org.kurodev.metrics.Metrics;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.SolveResult;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuSolver;
+
+/**
+ * Solves sudokus as an exact cover problem using Knuth's Algorithm X with dancing links.
+ * <p>
+ * Every (cell, number) pair is a row of the cover matrix, which satisfies four constraints:
+ * the cell is filled, and the number occurs in the row, column and box of the cell.
+ * The linked matrix is stored in plain int arrays that are built once and restored from a template
+ * before every solve, so solving does not allocate apart from the returned solution.
+ * <p>
+ * Instances are not thread-safe, use one solver per thread.
+ * If {@link Metrics} are enabled, every solve is recorded in {@code solve.time} and its search nodes in {@code solve.nodes}.
+ */
+public class DancingLinksSolver implements SudokuSolver {
+    private static final int NODES_PER_ROW = 4;
+
+    private Grid grid;
+    private int columns;
+    //the pristine matrix, copied into the working arrays before each solve
+    private int[] templateLeft, templateRight, templateUp, templateDown, templateSize;
+    //working matrix. Node 0 is the root, nodes 1..columns are the column headers, followed by the row nodes
+    private int[] left, right, up, down, columnSize;
+    private int[] column, rowOf;
+    //rows chosen on the current search path and the rows of the first solution found
+    private int[] partial, firstSolution;
+
+    private int limit;
+    private int solutions;
+    private long nodes;
+
+    @Override
+    public SolveResult solve(Sudoku puzzle, int maxSolutions) {
+        if (maxSolutions < 1) throw new IllegalArgumentException("maxSolutions must be at least 1 but was " + maxSolutions);
+        long start = System.nanoTime();
+        prepare(puzzle.getGrid());
+        limit = maxSolutions;
+        solutions = 0;
+        nodes = 0;
+
+        if (!coverGivens(puzzle)) {
+            return recorded(new SolveResult(null, 0, 0, System.nanoTime() - start));
+        }
+        search(0);
+
+        Sudoku solution = null;
+        if (solutions > 0) {
+            solution = puzzle.copyState();
+            int size = grid.size();
+            for (int i = 0; i < grid.cells(); i++) {
+                int row = firstSolution[i];
+                if (row >= 0) {
+                    solution.setNum(row % size + 1, row / size);
+                }
+            }
+        }
+        return recorded(new SolveResult(solution, solutions, nodes, System.nanoTime() - start));
+    }
+
+    private static SolveResult recorded(SolveResult result) {
+        if (Metrics.isEnabled()) {
+            Metrics.histogram("solve.time").record(result.nanos());
+            Metrics.count("solve.nodes", result.nodes());
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether clearing some cells of a puzzle with a known unique solution allowed another solution.
+     * <p>
+     * Any other solution has to differ from the known one in one of the cleared cells, so instead of counting solutions
+     * this searches for a single solution with the first cell excluded from its known number,
+     * then with the first cell fixed and the second one excluded, and so on.
+     * Most of these searches fail quickly, which makes this a lot cheaper than {@code solve(puzzle, 2)}.
+     *
+     * @param puzzle   The puzzle with the cells already cleared
+     * @param solution The unique solution the puzzle had before the cells were cleared
+     * @param cells    The cleared cells
+     * @return true if the puzzle now has more than one solution
+     */
+    public boolean hasOtherSolution(Sudoku puzzle, Sudoku solution, int... cells) {
+        for (int i = 0; i < cells.length; i++) {
+            prepare(puzzle.getGrid());
+            limit = 1;
+            solutions = 0;
+            nodes = 0;
+            if (!coverGivens(puzzle)) {
+                return false;
+            }
+            //exclude before placing, placing may already have unlinked the row from some of its columns
+            exclude(cells[i], solution.getNum(cells[i]));
+            for (int j = 0; j < i; j++) {
+                place(cells[j], solution.getNum(cells[j]));
+            }
+            search(0);
+            if (solutions > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void place(int cell, int num) {
+        int node = firstNodeOf(cell * grid.size() + num - 1);
+        for (int i = 0; i < NODES_PER_ROW; i++) {
+            cover(column[node + i]);
+        }
+    }
+
+    /**
+     * Removes a single row from the matrix, so the search can not choose it
+     */
+    private void exclude(int cell, int num) {
+        int node = firstNodeOf(cell * grid.size() + num - 1);
+        for (int i = 0; i < NODES_PER_ROW; i++) {
+            int j = node + i;
+            up[down[j]] = up[j];
+            down[up[j]] = down[j];
+            columnSize[column[j]]--;
+        }
+    }
+
+    /**
+     * Places all numbers of the puzzle by removing their rows from the matrix
+     *
+     * @return false if the puzzle contains clashing numbers and therefore cannot be solved
+     */
+    private boolean coverGivens(Sudoku puzzle) {
+        for (int cell = 0; cell < grid.cells(); cell++) {
+            firstSolution[cell] = -1;
+            int num = puzzle.getNum(cell);
+            if (num == 0) continue;
+            if (!puzzle.isNumberValid(num, cell)) {
+                return false;
+            }
+            place(cell, num);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the search should stop because enough solutions were found
+     */
+    private boolean search(int depth) {
+        if (right[0] == 0) {
+            if (solutions++ == 0) {
+                for (int i = 0; i < depth; i++) {
+                    int row = partial[i];
+                    firstSolution[row / grid.size()] = row;
+                }
+            }
+            return solutions >= limit;
+        }
+        //always branch on the constraint with the least options left
+        int col = right[0];
+        for (int c = right[col]; c != 0; c = right[c]) {
+            if (columnSize[c] < columnSize[col]) {
+                col = c;
+                if (columnSize[col] <= 1) break;
+            }
+        }
+        if (columnSize[col] == 0) {
+            return false;
+        }
+
+        cover(col);
+        for (int r = down[col]; r != col; r = down[r]) {
+            nodes++;
+            partial[depth] = rowOf[r];
+            for (int j = right[r]; j != r; j = right[j]) {
+                cover(column[j]);
+            }
+            if (search(depth + 1)) {
+                //no need to restore the matrix, the next solve starts from the template anyway
+                return true;
+            }
+            for (int j = left[r]; j != r; j = left[j]) {
+                uncover(column[j]);
+            }
+        }
+        uncover(col);
+        return false;
+    }
+
+    private void cover(int col) {
+        right[left[col]] = right[col];
+        left[right[col]] = left[col];
+        for (int i = down[col]; i != col; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                up[down[j]] = up[j];
+                down[up[j]] = down[j];
+                columnSize[column[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int col) {
+        for (int i = up[col]; i != col; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                columnSize[column[j]]++;
+                up[down[j]] = j;
+                down[up[j]] = j;
+            }
+        }
+        right[left[col]] = col;
+        left[right[col]] = col;
+    }
+
+    private int firstNodeOf(int row) {
+        return columns + 1 + row * NODES_PER_ROW;
+    }
+
+    /**
+     * Restores the working matrix from the template, building the template first if the grid changed.
+     */
+    private void prepare(Grid grid) {
+        if (this.grid != grid) {
+            buildTemplate(grid);
+        }
+        System.arraycopy(templateLeft, 0, left, 0, left.length);
+        System.arraycopy(templateRight, 0, right, 0, right.length);
+        System.arraycopy(templateUp, 0, up, 0, up.length);
+        System.arraycopy(templateDown, 0, down, 0, down.length);
+        System.arraycopy(templateSize, 0, columnSize, 0, columnSize.length);
+    }
+
+    private void buildTemplate(Grid grid) {
+        this.grid = grid;
+        int cells = grid.cells();
+        int size = grid.size();
+        int rows = cells * size;
+        columns = 4 * cells;
+        int nodeCount = columns + 1 + rows * NODES_PER_ROW;
+
+        templateLeft = new int[nodeCount];
+        templateRight = new int[nodeCount];
+        templateUp = new int[nodeCount];
+        templateDown = new int[nodeCount];
+        templateSize = new int[columns + 1];
+        column = new int[nodeCount];
+        rowOf = new int[nodeCount];
+        left = new int[nodeCount];
+        right = new int[nodeCount];
+        up = new int[nodeCount];
+        down = new int[nodeCount];
+        columnSize = new int[columns + 1];
+        partial = new int[cells];
+        firstSolution = new int[cells];
+
+        for (int h = 0; h <= columns; h++) {
+            templateLeft[h] = h == 0 ? columns : h - 1;
+            templateRight[h] = h == columns ? 0 : h + 1;
+            templateUp[h] = h;
+            templateDown[h] = h;
+            column[h] = h;
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            int rowUnit = grid.rowOf(cell), colUnit = grid.colOf(cell), boxUnit = grid.boxOf(cell);
+            for (int num = 0; num < size; num++) {
+                int row = cell * size + num;
+                int first = firstNodeOf(row);
+                //headers are 1-based because node 0 is the root
+                int[] headers = {
+                        1 + cell,
+                        1 + cells + rowUnit * size + num,
+                        1 + 2 * cells + colUnit * size + num,
+                        1 + 3 * cells + boxUnit * size + num
+                };
+                for (int i = 0; i < NODES_PER_ROW; i++) {
+                    int node = first + i;
+                    int h = headers[i];
+                    column[node] = h;
+                    rowOf[node] = row;
+                    templateLeft[node] = i == 0 ? first + NODES_PER_ROW - 1 : node - 1;
+                    templateRight[node] = i == NODES_PER_ROW - 1 ? first : node + 1;
+                    templateUp[node] = templateUp[h];
+                    templateDown[node] = h;
+                    templateDown[templateUp[h]] = node;
+                    templateUp[h] = node;
+                    templateSize[h]++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.kurodev.sudoku.symmetry;
+
+/**
+ * 128-bit hash of a canonical form, small enough to keep millions of them in a set for deduplication.
+ * Computed with MurmurHash3 (x64, 128 bit) over the canonical cells.
+ *
+ * @see Canonicalizer#hash(org.kurodev.sudoku.Sudoku)
+ */
+public record CanonicalHash(long high, long low) {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    /**
+     * @param cells The canonical cells, one number per byte
+     */
+    public static CanonicalHash of(byte[] cells) {
+        long h1 = 0, h2 = 0;
+        int blocks = cells.length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(cells, i * 16);
+            long k2 = getLong(cells, i * 16 + 8);
+            h1 ^= mixK1(k1);
+            h1 = Long.rotateLeft(h1, 27) + h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = Long.rotateLeft(h2, 31) + h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        long k1 = 0, k2 = 0;
+        int tail = blocks * 16;
+        for (int i = cells.length - 1; i >= tail; i--) {
+            int shift = (i - tail) % 8 * 8;
+            if (i - tail >= 8) {
+                k2 |= (cells[i] & 0xFFL) << shift;
+            } else {
+                k1 |= (cells[i] & 0xFFL) << shift;
+            }
+        }
+        h2 ^= mixK2(k2);
+        h1 ^= mixK1(k1);
+
+        h1 ^= cells.length;
+        h2 ^= cells.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new CanonicalHash(h1, h2);
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long out = 0;
+        for (int i = 7; i >= 0; i--) {
+            out = out << 8 | (bytes[offset + i] & 0xFFL);
+        }
+        return out;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,637 @@
+package org.kurodev.sudoku.symmetry;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Maps a sudoku to the canonical representative of all sudokus that are the same up to
+ * relabeling the numbers, permuting rows within bands and columns within stacks, permuting bands and stacks,
+ * and transposing. Two sudokus are isomorphic exactly if their canonical forms are equal.
+ * <p>
+ * The canonical form is the transformed field whose cells, read row by row, are lexicographically smallest.
+ * Numbers are relabeled in the order they first appear, and empty cells count as bigger than every number,
+ * so rows with many clues come first.
+ * <p>
+ * Instead of trying every transformation, the search fills the result one position at a time
+ * and only keeps the partial transformations that produced the smallest prefix so far.
+ * Everything else is cut off as soon as it falls behind, so usually only a handful of candidates survive each row.
+ * Complete grids are the exception: every row of them starts alike, so they keep far more candidates
+ * and take more than ten times as long as puzzles.
+ * <p>
+ * Instances keep scratch buffers between calls and are not thread-safe.
+ */
+public class Canonicalizer {
+    //layout of a candidate: transposed, next label, used rows, used columns, placed output columns, rows by output row,
+    //columns by output column, labels by number, source stack by output stack and output stack by source stack.
+    //Unplaced columns and stacks are -1
+    private static final int TRANSPOSED = 0, NEXT_LABEL = 1, USED_ROWS = 2, USED_COLS = 3, PLACED = 4, ROWS = 5;
+
+    private Grid grid;
+    private int size;
+    private int boxSize;
+    private int stride;
+    private int colsOffset;
+    private int labelsOffset;
+    private int stacksOffset;
+    private int outputStacksOffset;
+    //the cells as given, followed by the cells transposed
+    private byte[] oriented;
+    //per row of both orientations: bitset of its filled columns, filled cells per stack and the column of every number
+    private int[] filledColumns;
+    private int[] stackFill;
+    private int[] columnOf;
+    //(boxSize + 1) to the power of the index, so the sum over the stacks of a row orders rows like their sorted patterns
+    private int[] patternWeight;
+    //the sum for every line
+    private int[] patternCode;
+    //filled cells per output stack in the first row, bitset of the output stacks by their filled cells,
+    //and the rank of every output column among the filled ones, -1 if empty
+    private int[] pattern;
+    private int[] stacksWithFill;
+    private int[] rank;
+    //bitset of the lines in the band or stack of each line, and of each band or stack
+    private int[] blockOf;
+    private int[] blocks;
+    private int[] blockIndex;
+    private boolean[] startsBlock;
+    private int[] current = new int[0];
+    private int[] next = new int[0];
+    //per candidate the smallest key at the current output cell, and the source columns producing it
+    private int[] keys = new int[0];
+    private int[] choices = new int[0];
+    private int currentCount;
+    private int nextCount;
+    private final int[] bestKeys = new int[Grid.MAX_BOX_SIZE * Grid.MAX_BOX_SIZE];
+    private final int[] rowKeys = new int[Grid.MAX_BOX_SIZE * Grid.MAX_BOX_SIZE];
+
+    /**
+     * @return A new sudoku holding the canonical form
+     */
+    public Sudoku canonicalize(Sudoku sudoku) {
+        byte[] canonical = canonicalCells(sudoku);
+        Sudoku out = Sudoku.ofSize(sudoku.getGrid());
+        for (int cell = 0; cell < canonical.length; cell++) {
+            out.setNum(canonical[cell], cell);
+        }
+        return out;
+    }
+
+    /**
+     * @return The hash of the canonical form, equal for all isomorphic sudokus of the same size
+     */
+    public CanonicalHash hash(Sudoku sudoku) {
+        return CanonicalHash.of(canonicalCells(sudoku));
+    }
+
+    /**
+     * @return The cells of the canonical form row by row, 0 for empty cells
+     */
+    public byte[] canonicalCells(Sudoku sudoku) {
+        prepare(sudoku);
+        byte[] out = new byte[grid.cells()];
+        if (sudoku.getFilledCount() == 0) {
+            return out;
+        }
+        if (sudoku.getConflictCount() != 0) {
+            return canonicalWithRepeats(out);
+        }
+        chooseFirstRows();
+        indexFirstRows();
+        for (int col = 0; col < size; col++) {
+            out[col] = (byte) (rank[col] + 1);
+        }
+        for (int row = 1; row < size; row++) {
+            extendRow(row, out);
+        }
+        return out;
+    }
+
+    /**
+     * Without repeated numbers every filled cell of the first row gets a new label,
+     * so the first row only depends on how many cells of each stack are filled:
+     * the fullest stacks first, and the filled cells first within a stack.
+     * The rows producing the best such pattern are the only candidates, and none of their columns are placed yet.
+     * <p>
+     * A column is only placed once a later row needs it. Either its output column is reached and one of the allowed
+     * columns has a filled cell there, or the number of its first row cell appears, which labels the number by the earliest
+     * output column still possible for it. Output columns whose allowed columns are all empty in the current row stay unplaced,
+     * so the order of empty columns never multiplies the candidates.
+     */
+    private void chooseFirstRows() {
+        int best = -1;
+        for (int line = 0; line < 2 * size; line++) {
+            int code = 0;
+            for (int stack = 0; stack < boxSize; stack++) {
+                code += patternWeight[stackFill[line * boxSize + stack]];
+            }
+            patternCode[line] = code;
+            if (code > best) {
+                best = code;
+                System.arraycopy(stackFill, line * boxSize, pattern, 0, boxSize);
+            }
+        }
+        currentCount = 0;
+        for (int transposed = 0, line = 0; transposed < 2; transposed++) {
+            for (int row = 0; row < size; row++, line++) {
+                if (patternCode[line] != best) continue;
+                int s = ensure(true, currentCount++);
+                Arrays.fill(current, s, s + stride, -1);
+                Arrays.fill(current, s + labelsOffset, s + labelsOffset + size + 1, 0);
+                current[s + TRANSPOSED] = transposed;
+                current[s + NEXT_LABEL] = Integer.bitCount(filledColumns[line]) + 1;
+                current[s + USED_ROWS] = 1 << row;
+                current[s + USED_COLS] = 0;
+                current[s + PLACED] = 0;
+                current[s + ROWS] = row;
+            }
+        }
+        //sorts the stacks by filled cells, descending
+        for (int i = 1; i < boxSize; i++) {
+            for (int j = i; j > 0 && pattern[j - 1] < pattern[j]; j--) {
+                int tmp = pattern[j];
+                pattern[j] = pattern[j - 1];
+                pattern[j - 1] = tmp;
+            }
+        }
+        int filled = 0;
+        for (int stack = 0, col = 0; stack < boxSize; stack++) {
+            for (int i = 0; i < boxSize; i++, col++) {
+                rank[col] = i < pattern[stack] ? filled++ : -1;
+            }
+        }
+        Arrays.fill(stacksWithFill, 0);
+        for (int stack = 0; stack < boxSize; stack++) {
+            stacksWithFill[pattern[stack]] |= 1 << stack;
+        }
+    }
+
+    /**
+     * Chooses the source row of the given output row and places the columns it needs
+     */
+    private void extendRow(int row, byte[] out) {
+        //first expand every candidate by its possible source rows
+        nextCount = 0;
+        for (int i = 0; i < currentCount; i++) {
+            int s = i * stride;
+            int candidates = allowedLines(current[s + USED_ROWS], current[s + ROWS + row - 1], row);
+            for (; candidates != 0; candidates &= candidates - 1) {
+                int source = Integer.numberOfTrailingZeros(candidates);
+                int t = ensure(false, nextCount++);
+                System.arraycopy(current, s, next, t, stride);
+                next[t + ROWS + row] = source;
+                next[t + USED_ROWS] |= 1 << source;
+            }
+        }
+        swap();
+        for (int col = 0; col < size; col++) {
+            int best = extendColumn(row, col);
+            out[row * size + col] = (byte) (best > size ? 0 : best);
+        }
+    }
+
+    /**
+     * Keeps the candidates producing the smallest key at the output cell. Candidates are updated in place,
+     * only an unplaced column with several equally good source columns copies the candidate for each of them
+     *
+     * @return The smallest key
+     */
+    private int extendColumn(int row, int col) {
+        if (keys.length < currentCount) {
+            keys = new int[Math.max(currentCount, keys.length * 2)];
+            choices = new int[keys.length];
+        }
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < currentCount; i++) {
+            int s = i * stride;
+            int placed = current[s + colsOffset + col];
+            int key;
+            if (placed >= 0) {
+                key = labelOf(current, s, valueAt(current, s, current[s + ROWS + row], placed));
+            } else {
+                key = size + 1;
+                int chosen = 0;
+                //empty cells are never better than a filled one, and leave the column unplaced
+                int filled = filledColumns[current[s + TRANSPOSED] * size + current[s + ROWS + row]];
+                for (int candidates = allowedColumns(current, s, col) & filled; candidates != 0; candidates &= candidates - 1) {
+                    int source = Integer.numberOfTrailingZeros(candidates);
+                    int sourceKey = keyIfPlaced(current, s, row, source, col);
+                    if (sourceKey < key) {
+                        key = sourceKey;
+                        chosen = 0;
+                    }
+                    if (sourceKey == key) {
+                        chosen |= 1 << source;
+                    }
+                }
+                if (currentCount == 1 && (chosen & chosen - 1) == 0) {
+                    //the usual case of a single candidate that does not branch
+                    if (chosen != 0) {
+                        placeAndLabel(current, 0, row, Integer.numberOfTrailingZeros(chosen), col);
+                    }
+                    return key;
+                }
+                choices[i] = chosen;
+            }
+            keys[i] = key;
+            best = Math.min(best, key);
+        }
+        if (currentCount == 1 && current[colsOffset + col] >= 0) {
+            return best;
+        }
+        int kept = 0;
+        nextCount = 0;
+        for (int i = 0; i < currentCount; i++) {
+            if (keys[i] != best) continue;
+            int s = i * stride;
+            int k = kept++ * stride;
+            //an unplaced column stays unplaced while every allowed column is empty
+            if (current[s + colsOffset + col] >= 0 || best > size) {
+                if (k != s) {
+                    System.arraycopy(current, s, current, k, stride);
+                }
+                continue;
+            }
+            int chosen = choices[i];
+            for (int others = chosen & chosen - 1; others != 0; others &= others - 1) {
+                int t = ensure(false, nextCount++);
+                System.arraycopy(current, s, next, t, stride);
+                placeAndLabel(next, t, row, Integer.numberOfTrailingZeros(others), col);
+            }
+            if (k != s) {
+                System.arraycopy(current, s, current, k, stride);
+            }
+            placeAndLabel(current, k, row, Integer.numberOfTrailingZeros(chosen), col);
+        }
+        currentCount = kept + nextCount;
+        if (nextCount != 0) {
+            ensure(true, currentCount - 1);
+            System.arraycopy(next, 0, current, kept * stride, nextCount * stride);
+        }
+        return best;
+    }
+
+    private void placeAndLabel(int[] states, int s, int row, int source, int col) {
+        place(states, s, source, col);
+        labelOf(states, s, valueAt(states, s, states[s + ROWS + row], source));
+    }
+
+    /**
+     * Labels the number if it has none yet. A number of the first row gets the label of the earliest output column
+     * its first row column can still be placed at, which places that column
+     *
+     * @return The key of the number in the output, bigger than every label if it is 0
+     */
+    private int labelOf(int[] states, int s, int num) {
+        if (num == 0) {
+            return size + 1;
+        }
+        int label = states[s + labelsOffset + num];
+        if (label != 0) {
+            return label;
+        }
+        int firstRowColumn = columnOf[firstRow(states, s) * (size + 1) + num];
+        if (firstRowColumn < 0) {
+            return states[s + labelsOffset + num] = states[s + NEXT_LABEL]++;
+        }
+        int col = earliestPosition(states, s, firstRowColumn, -1, -1);
+        place(states, s, firstRowColumn, col);
+        return rank[col] + 1;
+    }
+
+    /**
+     * @return The key {@link #labelOf} returns after placing the source column at the output column, without changing the candidate
+     */
+    private int keyIfPlaced(int[] states, int s, int row, int source, int col) {
+        int num = valueAt(states, s, states[s + ROWS + row], source);
+        if (num == 0) {
+            return size + 1;
+        }
+        int label = states[s + labelsOffset + num];
+        if (label != 0) {
+            return label;
+        }
+        int firstRowColumn = columnOf[firstRow(states, s) * (size + 1) + num];
+        if (firstRowColumn < 0) {
+            return states[s + NEXT_LABEL];
+        }
+        //never the source column itself, a number appears only once per column
+        return rank[earliestPosition(states, s, firstRowColumn, source, col)] + 1;
+    }
+
+    /**
+     * @return Bitset of the source columns that may be placed at the output column:
+     * the unused columns of its stack, or of every unused stack with as many filled cells in the first row,
+     * that are filled in the first row exactly if the output column is
+     */
+    private int allowedColumns(int[] states, int s, int col) {
+        int firstRow = firstRow(states, s);
+        int filled = filledColumns[firstRow];
+        int sameFill = rank[col] >= 0 ? filled : ~filled;
+        int stack = states[s + stacksOffset + blockIndex[col]];
+        if (stack >= 0) {
+            return blocks[stack] & ~states[s + USED_COLS] & sameFill;
+        }
+        int out = 0;
+        for (int source = 0; source < boxSize; source++) {
+            if ((states[s + USED_COLS] & blocks[source]) == 0 && stackFill[firstRow * boxSize + source] == pattern[blockIndex[col]]) {
+                out |= blocks[source];
+            }
+        }
+        return out & sameFill;
+    }
+
+    /**
+     * @param source       A filled and unplaced column of the first row
+     * @param placedSource A column to treat as placed at placedCol, -1 for none
+     * @return The earliest output column the source column can still be placed at
+     */
+    private int earliestPosition(int[] states, int s, int source, int placedSource, int placedCol) {
+        int stack = blockIndex[source];
+        int outputStack = states[s + outputStacksOffset + stack];
+        int placed = states[s + PLACED];
+        if (placedSource >= 0) {
+            placed |= 1 << placedCol;
+            if (outputStack < 0 && blockIndex[placedSource] == stack) {
+                outputStack = blockIndex[placedCol];
+            }
+        }
+        if (outputStack >= 0) {
+            //the filled columns come first within a stack
+            return Integer.numberOfTrailingZeros(blocks[outputStack] & ~placed);
+        }
+        //the first output stack without placed columns and as many filled cells
+        int candidates = stacksWithFill[stackFill[firstRow(states, s) * boxSize + stack]];
+        while ((placed & blocks[Integer.numberOfTrailingZeros(candidates)]) != 0) {
+            candidates &= candidates - 1;
+        }
+        return Integer.numberOfTrailingZeros(candidates) * boxSize;
+    }
+
+    /**
+     * Places the source column at the output column, which labels its first row number if the output column is filled there
+     */
+    private void place(int[] states, int s, int source, int col) {
+        states[s + colsOffset + col] = source;
+        states[s + USED_COLS] |= 1 << source;
+        states[s + PLACED] |= 1 << col;
+        states[s + stacksOffset + blockIndex[col]] = blockIndex[source];
+        states[s + outputStacksOffset + blockIndex[source]] = blockIndex[col];
+        if (rank[col] >= 0) {
+            states[s + labelsOffset + valueAt(states, s, states[s + ROWS], source)] = rank[col] + 1;
+        }
+    }
+
+    private int firstRow(int[] states, int s) {
+        return states[s + TRANSPOSED] * size + states[s + ROWS];
+    }
+
+    /**
+     * If a number repeats within a line, a filled cell of the first row may reuse a label,
+     * so the first row no longer follows from its filled cells. Every column is then chosen one by one in the first row
+     */
+    private byte[] canonicalWithRepeats(byte[] out) {
+        transpose();
+        currentCount = 0;
+        for (int transposed = 0; transposed < 2; transposed++) {
+            for (int row = 0; row < size; row++) {
+                int s = ensure(true, currentCount++);
+                Arrays.fill(current, s, s + stride, 0);
+                current[s + TRANSPOSED] = transposed;
+                current[s + NEXT_LABEL] = 1;
+                current[s + USED_ROWS] = 1 << row;
+                current[s + ROWS] = row;
+            }
+        }
+        for (int col = 0; col < size; col++) {
+            extendFirstRowEagerly(col);
+        }
+        for (int row = 1; row < size; row++) {
+            extendRowEagerly(row);
+        }
+        //every remaining candidate produces the same field
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int num = valueAt(current, 0, current[ROWS + row], current[colsOffset + col]);
+                out[row * size + col] = (byte) (num == 0 ? 0 : current[labelsOffset + num]);
+            }
+        }
+        return out;
+    }
+
+    private void prepare(Sudoku sudoku) {
+        if (grid != sudoku.getGrid()) {
+            grid = sudoku.getGrid();
+            size = grid.size();
+            boxSize = grid.boxSize();
+            colsOffset = ROWS + size;
+            labelsOffset = colsOffset + size;
+            stacksOffset = labelsOffset + size + 1;
+            outputStacksOffset = stacksOffset + boxSize;
+            stride = outputStacksOffset + boxSize;
+            oriented = new byte[2 * grid.cells()];
+            filledColumns = new int[2 * size];
+            stackFill = new int[2 * size * boxSize];
+            columnOf = new int[2 * size * (size + 1)];
+            pattern = new int[boxSize];
+            patternCode = new int[2 * size];
+            stacksWithFill = new int[boxSize + 1];
+            rank = new int[size];
+            patternWeight = new int[boxSize + 1];
+            patternWeight[0] = 1;
+            for (int filled = 1; filled <= boxSize; filled++) {
+                patternWeight[filled] = patternWeight[filled - 1] * (boxSize + 1);
+            }
+            blocks = new int[boxSize];
+            blockOf = new int[size];
+            blockIndex = new int[size];
+            startsBlock = new boolean[size];
+            for (int line = 0; line < size; line++) {
+                blocks[line / boxSize] |= 1 << line;
+                blockIndex[line] = line / boxSize;
+                startsBlock[line] = line % boxSize == 0;
+            }
+            for (int line = 0; line < size; line++) {
+                blockOf[line] = blocks[line / boxSize];
+            }
+        }
+        //the transposed grid and the columns of the numbers are only needed for a few lines, see indexFirstRows
+        int size = this.size;
+        byte[] oriented = this.oriented;
+        int[] filledColumns = this.filledColumns;
+        Arrays.fill(filledColumns, size, 2 * size, 0);
+        for (int row = 0, cell = 0; row < size; row++) {
+            int filledRow = 0;
+            for (int col = 0; col < size; col++, cell++) {
+                int num = sudoku.getNum(cell);
+                //without branching on empty cells, which is what most cells of a puzzle are
+                int filled = -num >>> 31;
+                oriented[cell] = (byte) num;
+                filledRow |= filled << col;
+                filledColumns[size + col] |= filled << row;
+            }
+            filledColumns[row] = filledRow;
+        }
+        for (int line = 0; line < 2 * size; line++) {
+            for (int stack = 0; stack < boxSize; stack++) {
+                stackFill[line * boxSize + stack] = Integer.bitCount(filledColumns[line] & blocks[stack]);
+            }
+        }
+    }
+
+    /**
+     * Transposes the grid if a candidate needs it, and finds the column of every number in the first rows of the candidates
+     */
+    private void indexFirstRows() {
+        for (int i = 0; i < currentCount; i++) {
+            if (current[i * stride + TRANSPOSED] != 0) {
+                transpose();
+                break;
+            }
+        }
+        for (int i = 0; i < currentCount; i++) {
+            int s = i * stride;
+            int offset = firstRow(current, s) * (size + 1);
+            Arrays.fill(columnOf, offset, offset + size + 1, -1);
+            for (int col = 0; col < size; col++) {
+                //also sets number 0, which is never looked up
+                columnOf[offset + valueAt(current, s, current[s + ROWS], col)] = col;
+            }
+        }
+    }
+
+    private void transpose() {
+        int cells = size * size;
+        for (int row = 0, cell = 0; row < size; row++) {
+            for (int col = 0; col < size; col++, cell++) {
+                oriented[cells + col * size + row] = oriented[cell];
+            }
+        }
+    }
+
+    /**
+     * Chooses the source column of the given output column in the first row
+     */
+    private void extendFirstRowEagerly(int col) {
+        nextCount = 0;
+        int best = Integer.MAX_VALUE;
+        for (int i = 0; i < currentCount; i++) {
+            int s = i * stride;
+            int candidates = allowedLines(current[s + USED_COLS], col == 0 ? -1 : current[s + colsOffset + col - 1], col);
+            for (; candidates != 0; candidates &= candidates - 1) {
+                int source = Integer.numberOfTrailingZeros(candidates);
+                int num = valueAt(current, s, current[s + ROWS], source);
+                int key = keyOf(current, s, num);
+                if (key > best) continue;
+                if (key < best) {
+                    best = key;
+                    nextCount = 0;
+                }
+                int t = ensure(false, nextCount++);
+                System.arraycopy(current, s, next, t, stride);
+                next[t + colsOffset + col] = source;
+                next[t + USED_COLS] |= 1 << source;
+                label(next, t, num);
+            }
+        }
+        swap();
+    }
+
+    /**
+     * Chooses the source row of the given output row, all columns are already chosen
+     */
+    private void extendRowEagerly(int row) {
+        nextCount = 0;
+        boolean any = false;
+        for (int i = 0; i < currentCount; i++) {
+            int s = i * stride;
+            int candidates = allowedLines(current[s + USED_ROWS], current[s + ROWS + row - 1], row);
+            for (; candidates != 0; candidates &= candidates - 1) {
+                int source = Integer.numberOfTrailingZeros(candidates);
+                //build the candidate in the next free slot and only keep it if its row is not worse
+                int t = ensure(false, nextCount);
+                System.arraycopy(current, s, next, t, stride);
+                next[t + ROWS + row] = source;
+                next[t + USED_ROWS] |= 1 << source;
+                for (int col = 0; col < size; col++) {
+                    int num = valueAt(next, t, source, next[t + colsOffset + col]);
+                    rowKeys[col] = keyOf(next, t, num);
+                    label(next, t, num);
+                }
+                int cmp = any ? Arrays.compare(rowKeys, 0, size, bestKeys, 0, size) : -1;
+                if (cmp > 0) continue;
+                if (cmp < 0) {
+                    any = true;
+                    System.arraycopy(rowKeys, 0, bestKeys, 0, size);
+                    if (nextCount != 0) {
+                        System.arraycopy(next, t, next, 0, stride);
+                        nextCount = 0;
+                    }
+                }
+                nextCount++;
+            }
+        }
+        swap();
+    }
+
+    /**
+     * @param used     Bitset of the rows or columns that are already placed
+     * @param previous The row or column placed at the previous output position, -1 if there is none
+     * @param position The output position to fill
+     * @return Bitset of the rows or columns that may be placed at the position
+     */
+    private int allowedLines(int used, int previous, int position) {
+        if (!startsBlock[position]) {
+            //continue within the band or stack of the previous line
+            return blockOf[previous] & ~used;
+        }
+        int out = 0;
+        for (int block : blocks) {
+            if ((used & block) == 0) {
+                out |= block;
+            }
+        }
+        return out;
+    }
+
+    private int valueAt(int[] states, int s, int row, int col) {
+        return oriented[(states[s + TRANSPOSED] * size + row) * size + col];
+    }
+
+    private int keyOf(int[] states, int s, int num) {
+        if (num == 0) {
+            return size + 1;
+        }
+        int label = states[s + labelsOffset + num];
+        return label != 0 ? label : states[s + NEXT_LABEL];
+    }
+
+    private void label(int[] states, int s, int num) {
+        if (num != 0 && states[s + labelsOffset + num] == 0) {
+            states[s + labelsOffset + num] = states[s + NEXT_LABEL]++;
+        }
+    }
+
+    /**
+     * Grows the current or next buffer to hold the candidate at the given index
+     *
+     * @return The offset of the candidate
+     */
+    private int ensure(boolean inCurrent, int index) {
+        int needed = (index + 1) * stride;
+        if (inCurrent && current.length < needed) {
+            current = Arrays.copyOf(current, Math.max(needed, current.length * 2));
+        } else if (!inCurrent && next.length < needed) {
+            next = Arrays.copyOf(next, Math.max(needed, next.length * 2));
+        }
+        return index * stride;
+    }
+
+    private void swap() {
+        int[] tmp = current;
+        current = next;
+        next = tmp;
+        currentCount = nextCount;
+    }
+}
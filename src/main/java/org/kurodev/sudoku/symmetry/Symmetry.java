@@ -0,0 +1,110 @@
+package org.kurodev.sudoku.symmetry;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+
+import java.util.Random;
+
+/**
+ * A transformation that keeps a sudoku valid, unique and equally hard:
+ * a relabeling of the numbers, a permutation of bands and of the rows within them,
+ * the same for stacks and columns, and optionally a transposition.
+ * <p>
+ * Applying it touches every cell once. Instances are immutable and thread-safe.
+ */
+public final class Symmetry {
+    private final Grid grid;
+    //source row and column of every output row and column
+    private final int[] rows;
+    private final int[] cols;
+    //output number of every source number, labels[0] is always 0
+    private final int[] labels;
+    private final boolean transpose;
+
+    private Symmetry(Grid grid, int[] rows, int[] cols, int[] labels, boolean transpose) {
+        this.grid = grid;
+        this.rows = rows;
+        this.cols = cols;
+        this.labels = labels;
+        this.transpose = transpose;
+    }
+
+    public static Symmetry identity(Grid grid) {
+        int[] lines = new int[grid.size()];
+        int[] labels = new int[grid.size() + 1];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = i;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = i;
+        }
+        return new Symmetry(grid, lines, lines.clone(), labels, false);
+    }
+
+    /**
+     * Draws one of the transformations of the grid uniformly at random
+     */
+    public static Symmetry random(Grid grid, Random rng) {
+        int[] labels = new int[grid.size() + 1];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = i;
+        }
+        shuffle(labels, 1, grid.size(), rng);
+        int[] rows = randomLines(grid, rng);
+        int[] cols = randomLines(grid, rng);
+        return new Symmetry(grid, rows, cols, labels, rng.nextBoolean());
+    }
+
+    private static int[] randomLines(Grid grid, Random rng) {
+        int boxSize = grid.boxSize();
+        int[] blocks = new int[boxSize];
+        for (int i = 0; i < boxSize; i++) {
+            blocks[i] = i;
+        }
+        shuffle(blocks, 0, boxSize, rng);
+        int[] out = new int[grid.size()];
+        for (int block = 0; block < boxSize; block++) {
+            for (int line = 0; line < boxSize; line++) {
+                out[block * boxSize + line] = blocks[block] * boxSize + line;
+            }
+            shuffle(out, block * boxSize, boxSize, rng);
+        }
+        return out;
+    }
+
+    /**
+     * Fisher-Yates shuffle of the given range
+     */
+    private static void shuffle(int[] values, int from, int length, Random rng) {
+        for (int i = length - 1; i > 0; i--) {
+            int j = rng.nextInt(i + 1);
+            int tmp = values[from + i];
+            values[from + i] = values[from + j];
+            values[from + j] = tmp;
+        }
+    }
+
+    /**
+     * @return A new sudoku holding the transformed field
+     */
+    public Sudoku apply(Sudoku sudoku) {
+        Sudoku out = Sudoku.ofSize(grid);
+        apply(sudoku, out);
+        return out;
+    }
+
+    /**
+     * Writes the transformed field into another sudoku of the same size
+     */
+    public void apply(Sudoku source, Sudoku target) {
+        if (source.getGrid() != grid || target.getGrid() != grid)
+            throw new IllegalArgumentException("Symmetry of a " + grid.size() + "x" + grid.size() + " sudoku cannot be applied to this size");
+        int size = grid.size();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int num = labels[source.getNum(grid.indexOf(cols[col], rows[row]))];
+                target.setNum(num, transpose ? grid.indexOf(row, col) : grid.indexOf(col, row));
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package org.kurodev.ui;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Paints the whole board in one component and handles all input for it.
+ * <p>
+ * Cells are selected with the mouse or the arrow keys, numbers are entered with the number keys
+ * and cleared with 0, backspace or delete. A right click opens a menu with the candidates of the cell.
+ * Changed cells are only marked dirty with {@link #repaintCell(int)}, Swing coalesces all dirty rectangles
+ * into a single paint pass that only paints the cells within them.
+ * If a {@link CandidateModel} is set, the candidates of every empty cell are painted as pencil marks.
+ */
+public class BoardView extends JComponent {
+    private static final Color LOCKED_COLOR = Color.GREEN.brighter().brighter();
+    private static final Color FILLED_COLOR = Color.WHITE.darker();
+    private static final Color ERROR_COLOR = Color.RED;
+    private static final Color HIGHLIGHT_COLOR = new Color(255, 230, 120);
+    private static final Color SELECTED_COLOR = new Color(120, 170, 255);
+    private static final Color CANDIDATE_COLOR = Color.GRAY;
+    private static final int PREFERRED_CELL_SIZE = 40;
+    //painted numbers, so painting does not create a string per cell
+    private static final String[] LABELS = new String[Grid.MAX_BOX_SIZE * Grid.MAX_BOX_SIZE + 1];
+
+    static {
+        for (int num = 0; num < LABELS.length; num++) {
+            LABELS[num] = String.valueOf(num);
+        }
+    }
+
+    private final InputListener listener;
+    private final JPopupMenu menu = new JPopupMenu();
+    private final BitSet highlighted = new BitSet();
+    private Sudoku game;
+    private Sudoku initial;
+    private CandidateModel candidates;
+    private int selected = -1;
+
+    /**
+     * @param listener Called when the player enters or clears a number
+     */
+    public BoardView(InputListener listener) {
+        this.listener = listener;
+        setFocusable(true);
+        setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 12));
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
+                int cell = cellAt(e.getX(), e.getY());
+                if (cell < 0) return;
+                select(cell);
+                if (SwingUtilities.isRightMouseButton(e) && isEnabled() && !isLocked(cell)) {
+                    showCandidates(cell);
+                }
+            }
+        });
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                handleKey(e);
+            }
+        });
+    }
+
+    /**
+     * Shows a game, cells that are filled in the initial state cannot be changed
+     */
+    public void setGame(Sudoku game, Sudoku initial) {
+        this.game = game;
+        this.initial = initial;
+        highlighted.clear();
+        if (selected >= game.getGrid().cells()) {
+            selected = -1;
+        }
+        repaint();
+    }
+
+    /**
+     * Marks the cells to draw attention to, e.g. the cells of a hint. Replaces the previous ones
+     */
+    public void setHighlighted(Collection<Integer> cells) {
+        highlighted.stream().forEach(this::repaintCell);
+        highlighted.clear();
+        cells.forEach(highlighted::set);
+        cells.forEach(this::repaintCell);
+    }
+
+    /**
+     * @param candidates The pencil marks to paint, or null to hide them
+     */
+    public void setCandidates(CandidateModel candidates) {
+        this.candidates = candidates;
+        repaint();
+    }
+
+    public void select(int cell) {
+        int previous = selected;
+        selected = cell;
+        if (previous >= 0) repaintCell(previous);
+        if (cell >= 0) repaintCell(cell);
+    }
+
+    /**
+     * Marks the cell as changed, it is repainted together with all other changed cells
+     */
+    public void repaintCell(int cell) {
+        if (game == null) return;
+        Rectangle bounds = cellBounds(cell);
+        //include the surrounding lines, a box border may be thicker than a cell gap
+        bounds.grow(2, 2);
+        repaint(bounds);
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int size = game == null ? Grid.STANDARD.size() : game.getSize();
+        return new Dimension(size * PREFERRED_CELL_SIZE, size * PREFERRED_CELL_SIZE);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g2.setColor(Color.WHITE);
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (game == null) return;
+            Grid grid = game.getGrid();
+            Rectangle clip = g2.getClipBounds();
+            int cellSize = cellSize();
+            Font numberFont = getFont().deriveFont(Font.PLAIN, cellSize * 0.6f);
+            Font candidateFont = getFont().deriveFont(Font.PLAIN, cellSize * 0.6f / grid.boxSize());
+            for (int cell = 0; cell < grid.cells(); cell++) {
+                Rectangle bounds = cellBounds(cell);
+                if (clip != null && !clip.intersects(bounds)) continue;
+                g2.setColor(backgroundOf(cell));
+                g2.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+                int num = game.getNum(cell);
+                if (num != 0) {
+                    g2.setFont(numberFont);
+                    g2.setColor(isEnabled() || isLocked(cell) ? Color.BLACK : Color.GRAY);
+                    drawCentered(g2, LABELS[num], bounds.x, bounds.y, bounds.width);
+                } else if (candidates != null) {
+                    g2.setFont(candidateFont);
+                    g2.setColor(CANDIDATE_COLOR);
+                    paintCandidates(g2, grid, candidates.get(cell), bounds);
+                }
+            }
+            paintLines(g2, grid, cellSize);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    /**
+     * Paints every candidate at a fixed position within the cell, numbers in a box-sized grid like on a keypad
+     */
+    private static void paintCandidates(Graphics2D g2, Grid grid, int mask, Rectangle bounds) {
+        int boxSize = grid.boxSize();
+        int slot = bounds.width / boxSize;
+        for (; mask != 0; mask &= mask - 1) {
+            int num = Integer.numberOfTrailingZeros(mask);
+            int x = bounds.x + (num - 1) % boxSize * slot;
+            int y = bounds.y + (num - 1) / boxSize * slot;
+            drawCentered(g2, LABELS[num], x, y, slot);
+        }
+    }
+
+    private static void drawCentered(Graphics2D g2, String text, int x, int y, int size) {
+        FontMetrics metrics = g2.getFontMetrics();
+        g2.drawString(text, x + (size - metrics.stringWidth(text)) / 2, y + (size - metrics.getHeight()) / 2 + metrics.getAscent());
+    }
+
+    private void paintLines(Graphics2D g2, Grid grid, int cellSize) {
+        int size = grid.size();
+        int length = size * cellSize;
+        g2.setColor(Color.BLACK);
+        for (int i = 0; i <= size; i++) {
+            boolean boxBorder = i % grid.boxSize() == 0;
+            g2.setStroke(new BasicStroke(boxBorder ? 3 : 1));
+            g2.drawLine(i * cellSize, 0, i * cellSize, length);
+            g2.drawLine(0, i * cellSize, length, i * cellSize);
+        }
+    }
+
+    private Color backgroundOf(int cell) {
+        if (cell == selected && isEnabled()) return SELECTED_COLOR;
+        if (isLocked(cell)) return LOCKED_COLOR;
+        if (game.hasConflict(cell)) return ERROR_COLOR;
+        if (highlighted.get(cell)) return HIGHLIGHT_COLOR;
+        if (game.getNum(cell) != 0) return FILLED_COLOR;
+        return Color.WHITE;
+    }
+
+    private boolean isLocked(int cell) {
+        return initial != null && initial.getNum(cell) != 0;
+    }
+
+    private int cellSize() {
+        return Math.max(1, Math.min(getWidth(), getHeight()) / game.getSize());
+    }
+
+    private Rectangle cellBounds(int cell) {
+        Grid grid = game.getGrid();
+        int cellSize = cellSize();
+        return new Rectangle(grid.colOf(cell) * cellSize, grid.rowOf(cell) * cellSize, cellSize, cellSize);
+    }
+
+    /**
+     * @return The cell at the position, or -1 if there is none
+     */
+    private int cellAt(int x, int y) {
+        if (game == null) return -1;
+        int cellSize = cellSize();
+        int col = x / cellSize, row = y / cellSize;
+        if (x < 0 || y < 0 || col >= game.getSize() || row >= game.getSize()) return -1;
+        return game.getGrid().indexOf(col, row);
+    }
+
+    private void handleKey(KeyEvent e) {
+        if (game == null || selected < 0) return;
+        Grid grid = game.getGrid();
+        int row = grid.rowOf(selected), col = grid.colOf(selected);
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_UP -> select(grid.indexOf(col, Math.max(0, row - 1)));
+            case KeyEvent.VK_DOWN -> select(grid.indexOf(col, Math.min(grid.size() - 1, row + 1)));
+            case KeyEvent.VK_LEFT -> select(grid.indexOf(Math.max(0, col - 1), row));
+            case KeyEvent.VK_RIGHT -> select(grid.indexOf(Math.min(grid.size() - 1, col + 1), row));
+            case KeyEvent.VK_BACK_SPACE, KeyEvent.VK_DELETE -> input(selected, 0);
+            default -> {
+                int num = Character.digit(e.getKeyChar(), Character.MAX_RADIX);
+                //numbers above 9 are entered as letters on bigger boards
+                if (num >= 0 && num <= grid.size()) {
+                    input(selected, num);
+                }
+            }
+        }
+    }
+
+    private void input(int cell, int num) {
+        if (!isEnabled() || isLocked(cell)) return;
+        listener.cellChanged(cell, num);
+    }
+
+    private void showCandidates(int cell) {
+        menu.removeAll();
+        int candidates = game.getCandidates(cell);
+        if (candidates == 0) {
+            JMenuItem item = new JMenuItem("None");
+            item.setEnabled(false);
+            menu.add(item);
+        }
+        for (int mask = candidates; mask != 0; mask &= mask - 1) {
+            int num = Integer.numberOfTrailingZeros(mask);
+            JMenuItem item = new JMenuItem(String.valueOf(num));
+            item.addActionListener(e -> input(cell, num));
+            menu.add(item);
+        }
+        Rectangle bounds = cellBounds(cell);
+        menu.show(this, bounds.x, bounds.y + bounds.height);
+    }
+
+    @FunctionalInterface
+    public interface InputListener {
+        /**
+         * @param num The entered number, 0 if the cell was cleared
+         */
+        void cellChanged(int cell, int num);
+    }
+}
@@ -0,0 +1,57 @@
+package org.kurodev.ui;
+
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Pencil marks for every empty cell of a game, kept as one candidate bitmask per cell.
+ * <p>
+ * The masks are computed once for the whole board. After that a move only changes the candidates of the cell itself
+ * and of its peers, so {@link #cellChanged(int, IntConsumer)} only recomputes those.
+ */
+public class CandidateModel {
+    private final Sudoku game;
+    private final int[] masks;
+
+    public CandidateModel(Sudoku game) {
+        this.game = game;
+        this.masks = new int[game.getGrid().cells()];
+        for (int cell = 0; cell < masks.length; cell++) {
+            masks[cell] = compute(cell);
+        }
+    }
+
+    /**
+     * @return Bitmask of the candidates of the cell, bit n standing for the number n. 0 for filled cells
+     */
+    public int get(int cell) {
+        return masks[cell];
+    }
+
+    /**
+     * Updates the candidates after the number of a cell was changed
+     *
+     * @param changed Called with every cell whose candidates changed
+     */
+    public void cellChanged(int cell, IntConsumer changed) {
+        update(cell, changed);
+        Grid grid = game.getGrid();
+        for (int i = 0; i < grid.peerCount(); i++) {
+            update(grid.peer(cell, i), changed);
+        }
+    }
+
+    private void update(int cell, IntConsumer changed) {
+        int mask = compute(cell);
+        if (mask != masks[cell]) {
+            masks[cell] = mask;
+            changed.accept(cell);
+        }
+    }
+
+    private int compute(int cell) {
+        return game.getNum(cell) == 0 ? game.getCandidates(cell) : 0;
+    }
+}
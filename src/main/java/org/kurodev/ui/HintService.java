@@ -0,0 +1,99 @@
+package org.kurodev.ui;
+
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.grade.LogicalSolver;
+import org.kurodev.sudoku.grade.Step;
+import org.kurodev.sudoku.symmetry.CanonicalHash;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Finds the next logical step for the board on a background thread, so asking for a hint never blocks the EDT.
+ * <p>
+ * Only the most recent request is worked on: a new request or {@link #boardChanged()} cancels the previous one,
+ * and cancelled requests that have not started yet are skipped.
+ * Results are remembered by a hash of the board, so asking again for the same board, e.g. after undoing a move,
+ * is answered immediately.
+ */
+public class HintService implements AutoCloseable {
+    private static final int CACHE_SIZE = 256;
+
+    //only used on the hint thread
+    private final LogicalSolver solver = new LogicalSolver();
+    private final Map<CanonicalHash, Optional<Step>> cache = new LinkedHashMap<>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CanonicalHash, Optional<Step>> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Hint Thread");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<Optional<Step>> pending;
+
+    /**
+     * Requests a hint for the current state of the board. The board is copied, so it may be changed right after.
+     *
+     * @return Completes with the next step, or an empty optional if the board is solved or cannot be progressed by logic.
+     * Completes exceptionally with an {@link IllegalArgumentException} if the board contains clashing numbers,
+     * and is cancelled if another hint is requested or the board changes before it is done
+     */
+    public synchronized CompletableFuture<Optional<Step>> requestHint(Sudoku board) {
+        Sudoku copy = board.copyState();
+        CanonicalHash key = hashOf(copy);
+        Optional<Step> cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        boardChanged();
+        CompletableFuture<Optional<Step>> result = new CompletableFuture<>();
+        pending = result;
+        executor.execute(() -> {
+            if (result.isDone()) return;
+            try {
+                Optional<Step> step = Optional.ofNullable(solver.nextStep(copy));
+                synchronized (cache) {
+                    cache.put(key, step);
+                }
+                result.complete(step);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Cancels the pending request, its hint would refer to an outdated board
+     */
+    public synchronized void boardChanged() {
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+    }
+
+    private static CanonicalHash hashOf(Sudoku board) {
+        byte[] cells = new byte[board.getGrid().cells()];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = (byte) board.getNum(cell);
+        }
+        return CanonicalHash.of(cells);
+    }
+
+    @Override
+    public void close() {
+        boardChanged();
+        executor.shutdownNow();
+    }
+}
@@ -1,30 +1,42 @@
 package org.kurodev.ui;
 
+import org.kurodev.metrics.BoardInputEvent;
+import org.kurodev.metrics.Metrics;
 import org.kurodev.sudoku.Difficulty;
 import org.kurodev.sudoku.Sudoku;
 import org.kurodev.sudoku.gen.Coordinate;
+import org.kurodev.sudoku.grade.Step;
 
 import javax.swing.*;
-import javax.swing.border.Border;
 import java.awt.*;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 public class MainWindow extends JFrame {
     private final SudokuHandler gameHandler = new SudokuHandler();
-    private final Map<Coordinate, JNumberField> fields = new HashMap<>(9 + 9);
+    private final BoardView board = new BoardView(this::handleInput);
     private final JLabel movesLabel = new JLabel();
+    private final JLabel hintLabel = new JLabel();
+    private final HintService hints = new HintService();
     private final JProgressBar progressBar = new JProgressBar();
+    private final JToggleButton notesButton = new JToggleButton("Notes");
+    private CandidateModel candidates;
 
     public void createAndShowGUI() {
         setTitle("Sudoku");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        Runtime.getRuntime().addShutdownHook(new Thread(gameHandler::save));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            hints.close();
+            gameHandler.shutdown();
+        }));
         setLayout(new BorderLayout()); // Set layout to BorderLayout
         add(createToolbar(), BorderLayout.NORTH); // Add toolbar at the top
-        add(createSudokuPanel(), BorderLayout.CENTER); // Sudoku panel in the center
+        add(board, BorderLayout.CENTER); // Sudoku board in the center
         pack();
         setLocationRelativeTo(null); // Center the window
         setVisible(true);
@@ -32,6 +44,7 @@ public class MainWindow extends JFrame {
 
         if (gameHandler.load()) {
             loadGame();
+            gameHandler.prepareGames(Difficulty.MEDIUM);
         } else {
             startGame();
         }
@@ -42,70 +55,89 @@ public class MainWindow extends JFrame {
         toolBar.setFloatable(false);
 
         JButton startButton = new JButton("Start Game");
-        progressBar.setIndeterminate(true);
+        JButton hintButton = new JButton("Hint");
+        JButton undoButton = new JButton("Undo");
+        JButton redoButton = new JButton("Redo");
         progressBar.setVisible(false);
 
         // Set margins for the toolbar components
         startButton.setMargin(new Insets(5, 10, 5, 10));
+        hintButton.setMargin(new Insets(5, 10, 5, 10));
+        undoButton.setMargin(new Insets(5, 10, 5, 10));
+        redoButton.setMargin(new Insets(5, 10, 5, 10));
+        notesButton.setMargin(new Insets(5, 10, 5, 10));
         movesLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
+        hintLabel.setBorder(BorderFactory.createEmptyBorder(5, 10, 5, 10));
 
         // Add action listeners to the buttons as needed
         startButton.addActionListener(e -> startGame());
+        hintButton.addActionListener(e -> requestHint());
+        undoButton.addActionListener(e -> showHistoryMove(gameHandler.undo()));
+        redoButton.addActionListener(e -> showHistoryMove(gameHandler.redo()));
+        notesButton.addActionListener(e -> board.setCandidates(notesButton.isSelected() ? candidates : null));
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), undoButton);
+        bindKey(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), redoButton);
 
         toolBar.add(startButton);
+        toolBar.add(hintButton);
+        toolBar.add(undoButton);
+        toolBar.add(redoButton);
+        toolBar.add(notesButton);
         toolBar.addSeparator();
         toolBar.add(movesLabel);
+        toolBar.add(hintLabel);
         toolBar.addSeparator(new Dimension(10, 0)); // Separator for margin
         toolBar.add(progressBar);
 
         return toolBar;
     }
 
-    private JPanel createSudokuPanel() {
-        JPanel sudokuPanel = new JPanel(new GridLayout(3, 3, 2, 2));
-        Border border = BorderFactory.createLineBorder(Color.BLACK);
-        JNumberFieldMenu menu = new JNumberFieldMenu();
-
-        // Iterate over the entire 9x9 grid
-        for (int gridY = 0; gridY < 3; gridY++) {
-            for (int gridX = 0; gridX < 3; gridX++) {
-                JPanel subgrid = new JPanel(new GridLayout(3, 3));
-                subgrid.setBorder(border);
-                // Iterate within each subgrid
-                for (int subY = 0; subY < 3; subY++) {
-                    for (int subX = 0; subX < 3; subX++) {
-                        // Calculate the actual coordinates in the 9x9 grid
-                        int x = gridX * 3 + subX;
-                        int y = gridY * 3 + subY;
-                        final Coordinate c = new Coordinate(x, y);
-                        JNumberField numberField = new JNumberField(menu, () -> this.getAvailableNumbers(c));
-                        numberField.setEnabled(false);
-                        numberField.setHorizontalAlignment(JTextField.CENTER);
-                        subgrid.add(numberField);
-                        fields.put(c, numberField);
-                        numberField.getChangeListeners()
-                                .add(integer -> handleInput(c, integer != null ? integer : 0));
-                    }
-                }
-                sudokuPanel.add(subgrid);
+    private void bindKey(KeyStroke key, JButton button) {
+        getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(key, button.getText());
+        getRootPane().getActionMap().put(button.getText(), new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                button.doClick();
             }
-        }
-        return sudokuPanel;
+        });
     }
 
     /**
-     * Retrieves a list of available numbers
+     * Asks the hint service for the next logical step, the answer is shown once it arrives
      */
-    private List<String> getAvailableNumbers(Coordinate c) {
-        Sudoku game = gameHandler.getGame();
-        List<String> out = new ArrayList<>(9);
-        for (int i = 1; i <= 9; i++) {
-            if (game.isNumberValid(i, c)) {
-                out.add(String.valueOf(i));
-            }
+    private void requestHint() {
+        hintLabel.setText("Thinking...");
+        hints.requestHint(gameHandler.getGame()).whenComplete((step, error) -> SwingUtilities.invokeLater(() -> showHint(step, error)));
+    }
+
+    private void showHint(Optional<Step> hint, Throwable error) {
+        if (error instanceof CompletionException) {
+            error = error.getCause();
+        }
+        if (error instanceof CancellationException) {
+            //the board changed in the meantime, the hint would be outdated
+            return;
+        }
+        if (error != null) {
+            hintLabel.setText("Hint: fix the clashing numbers first");
+            return;
+        }
+        if (hint.isEmpty()) {
+            hintLabel.setText("Hint: no logical step found");
+            return;
+        }
+        Step step = hint.get();
+        String technique = step.technique().name().toLowerCase().replace('_', ' ');
+        int num = Integer.numberOfTrailingZeros(step.digits());
+        board.setHighlighted(step.pattern());
+        if (step.placement()) {
+            int cell = step.changed().get(0);
+            Coordinate pos = gameHandler.getGame().getGrid().coordinateOf(cell);
+            hintLabel.setText("Hint: " + technique + ", " + num + " at " + (pos.x() + 1) + "/" + (pos.y() + 1));
+            board.select(cell);
+        } else {
+            hintLabel.setText("Hint: " + technique + " removes candidates from " + step.changed().size() + " cells");
         }
-//        System.out.println(out);
-        return out;
     }
 
     private void updateMoves() {
@@ -113,66 +145,102 @@ public class MainWindow extends JFrame {
     }
 
     /**
-     * Handle user input when changing the numbers in a field
+     * Handle user input when changing the number of a cell.
+     * The time spent on the event dispatch thread is emitted as {@link BoardInputEvent} while recording and recorded in {@code ui.input}
      */
-    private void handleInput(Coordinate pos, int num) {
+    private void handleInput(int cell, int num) {
+        BoardInputEvent event = Metrics.isRecording() ? new BoardInputEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        applyInput(cell, num);
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.cell = cell;
+                event.num = num;
+                event.commit();
+            }
+        }
+        Metrics.recordSince("ui.input", start);
+    }
+
+    private void applyInput(int cell, int num) {
         Sudoku game = gameHandler.getGame();
-        game.setNum(num, pos);
-        updateNumberColors(pos);
-        if (gameHandler.getGame().isValidSudoku()) {
-            //game is won
-            fields.values().forEach(field -> field.setEnabled(false));
-            movesLabel.setText("You won. Total moves: " + gameHandler.getTurn());
-        } else if (num != 0) {
+        if (game.getNum(cell) == num) {
+            return;
+        }
+        gameHandler.play(num, cell);
+        boardChanged(cell);
+        if (!checkWon() && num != 0) {
             gameHandler.incrementTurn();
             updateMoves();
         }
     }
 
-    private void updateNumberColors(Coordinate pos) {
-        gameHandler.getGame().getGroupPos(pos).forEach(this::updateColor);
-        gameHandler.getGame().getLinePos(pos).forEach(this::updateColor);
+    /**
+     * Shows the cell changed by an undo or redo
+     *
+     * @param cell The changed cell, or -1 if nothing changed
+     */
+    private void showHistoryMove(int cell) {
+        if (cell < 0) return;
+        board.select(cell);
+        boardChanged(cell);
+        //undoing the winning move continues the game
+        board.setEnabled(!gameHandler.getGame().isSolved());
+        if (!checkWon()) {
+            updateMoves();
+        }
     }
 
-    private void updateColor(Coordinate pos) {
-        Sudoku game = gameHandler.getGame();
-        var field = fields.get(pos);
-        int num = field.getNumber();
-        SwingUtilities.invokeLater(() -> {
-//            System.out.println("num " + num + " pos " + pos + " valid " + game.isNumberValid(num, pos));
-            field.setError(num != 0 && !game.isNumberValid(num, pos));
-        });
+    /**
+     * Drops the outdated hint and repaints every cell whose number, conflict status or candidates changed
+     *
+     * @param cell The cell whose number changed
+     */
+    private void boardChanged(int cell) {
+        hints.boardChanged();
+        hintLabel.setText("");
+        board.setHighlighted(List.of());
+        gameHandler.getGame().forEachDirtyCell(board::repaintCell);
+        candidates.cellChanged(cell, board::repaintCell);
+    }
+
+    private boolean checkWon() {
+        if (gameHandler.getGame().isSolved()) {
+            //game is won
+            board.setEnabled(false);
+            board.repaint();
+            movesLabel.setText("You won. Total moves: " + gameHandler.getTurn());
+            return true;
+        }
+        return false;
     }
 
     /**
      * Create a new game
      */
     private void startGame() {
+        progressBar.setValue(0);
         progressBar.setVisible(true);
-        fields.values().forEach(field -> {
-            field.setEnabled(false);
-            field.setError(false);
-            field.setLocked(false);
-            field.setText("");
-        });
-        new Thread(() -> {
-            gameHandler.startGame(Difficulty.MEDIUM);
-            SwingUtilities.invokeLater(() -> {
-                for (int y = 0; y < Sudoku.FIELD_SIZE; y++) {
-                    for (int x = 0; x < Sudoku.FIELD_SIZE; x++) {
-                        Coordinate c = new Coordinate(x, y);
-                        JNumberField field = fields.get(c);
-                        int num = gameHandler.getInitialState().getNum(c);
-                        field.setLocked(num != 0);
-                        field.setText(String.valueOf(num));
+        gameHandler.newGame(Difficulty.MEDIUM, progress -> SwingUtilities.invokeLater(() -> progressBar.setValue((int) (progress * 100))))
+                .whenComplete((game, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error instanceof CancellationException || error != null && error.getCause() instanceof CancellationException) {
+                        //superseded by a newer request, which takes care of the progress bar
+                        return;
                     }
-                }
-                fields.values().forEach(field -> field.setEnabled(true));
-                progressBar.setVisible(false);
-                gameHandler.resetTurns();
-                updateMoves();
-            });
-        }, "Generator Thread").start();
+                    progressBar.setVisible(false);
+                    if (error != null) {
+                        error.printStackTrace();
+                        hintLabel.setText("Failed to generate a puzzle");
+                        return;
+                    }
+                    hints.boardChanged();
+                    hintLabel.setText("");
+                    gameHandler.startGame(game);
+                    showGame();
+                    updateMoves();
+                }));
     }
 
     /**
@@ -180,47 +248,20 @@ public class MainWindow extends JFrame {
      */
     private void loadGame() {
         System.out.println("loaded game state");
-        gameHandler.lockTurnCount(true);
-        fields.values().forEach(field -> {
-            field.setError(false);
-            field.setLocked(false);
-            field.setText("");
-        });
-        SwingUtilities.invokeLater(() -> {
-            fields.values().forEach(field -> field.setEnabled(true));
-            for (int y = 0; y < Sudoku.FIELD_SIZE; y++) {
-                for (int x = 0; x < Sudoku.FIELD_SIZE; x++) {
-                    Coordinate c = new Coordinate(x, y);
-                    JNumberField field = fields.get(c);
-                    int num = gameHandler.getInitialState().getNum(c);
-                    if (num == 0) {
-                        field.setText(String.valueOf(gameHandler.getGame().getNum(c)));
-                    } else {
-                        field.setText(String.valueOf(num));
-                        field.setLocked(true);
-                    }
-
-
-                }
-            }
-            repaint();
-            progressBar.setVisible(false);
-        });
+        showGame();
+        updateMoves();
+        progressBar.setVisible(false);
     }
 
-    /**
-     * Repaint the component
-     */
-    @Override
-    public void repaint() {
-        gameHandler.lockTurnCount(true);
-        for (int y = 0; y < Sudoku.FIELD_SIZE; y++) {
-            for (int x = 0; x < Sudoku.FIELD_SIZE; x++) {
-                Coordinate c = new Coordinate(x, y);
-                JNumberField field = fields.get(c);
-                field.setText(String.valueOf(gameHandler.getGame().getNum(c)));
-            }
-        }
-        gameHandler.lockTurnCount(false);
+    private void showGame() {
+        Sudoku game = gameHandler.getGame();
+        //the whole board is painted anyway, so only the dirty flags have to be cleared
+        game.forEachDirtyCell(cell -> {
+        });
+        board.setGame(game, gameHandler.getInitialState());
+        candidates = new CandidateModel(game);
+        board.setCandidates(notesButton.isSelected() ? candidates : null);
+        board.setEnabled(!game.isSolved());
+        board.requestFocusInWindow();
     }
 }
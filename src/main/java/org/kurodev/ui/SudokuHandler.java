@@ -1,25 +1,83 @@
 package org.kurodev.ui;
 
+import org.kurodev.metrics.Metrics;
+import org.kurodev.metrics.PersistenceEvent;
 import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.GenerationService;
+import org.kurodev.sudoku.PuzzlePool;
 import org.kurodev.sudoku.Sudoku;
-import org.kurodev.sudoku.SudokuFactory;
 import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.SudokuGenerator;
+import org.kurodev.sudoku.io.MoveJournal;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleConsumer;
 
 public class SudokuHandler {
     private static final Path SAVE_FILE = Path.of("./game.sudoku");
+    private static final Path POOL_FILE = Path.of("./puzzles.pool");
 
+    private final SudokuGenerator generator = new BacktrackingSudokuGenerator();
+    private final PuzzlePool pool = new PuzzlePool(generator, 2, 5, 1, POOL_FILE);
+    private final GenerationService generation = new GenerationService(generator, 1, 2);
+    private final boolean journaled;
+    private MoveJournal journal;
     private SudokuWithSolution sudoku;
-    private boolean locked;
 
-    public void startGame(Difficulty difficulty) {
-        sudoku = SudokuFactory.create(difficulty);
+    public SudokuHandler() {
+        this(true);
+    }
+
+    /**
+     * @param journaled true to persist every move right away with a {@link MoveJournal},
+     *                  false to only save the game on {@link #shutdown()}
+     */
+    public SudokuHandler(boolean journaled) {
+        this.journaled = journaled;
+    }
+
+    /**
+     * Takes a ready puzzle, or generates one in the background if none is ready.
+     * An earlier request that is still generating is cancelled.
+     *
+     * @param progress Called on the generating thread with the progress between 0 and 1
+     * @return The new puzzle, it is played once passed to {@link #startGame(SudokuWithSolution)}
+     */
+    public CompletableFuture<SudokuWithSolution> newGame(Difficulty difficulty, DoubleConsumer progress) {
+        SudokuWithSolution ready = pool.poll(difficulty);
+        if (ready != null) {
+            generation.cancel();
+            return CompletableFuture.completedFuture(ready);
+        }
+        return generation.submit(difficulty, null, progress);
+    }
+
+    public void startGame(SudokuWithSolution game) {
+        sudoku = game;
+        startJournal();
         resetTurns();
     }
 
+    private void startJournal() {
+        if (!journaled) return;
+        if (journal == null) {
+            journal = new MoveJournal(SAVE_FILE, sudoku);
+        } else {
+            journal.reset(sudoku);
+        }
+    }
+
+    /**
+     * Starts generating puzzles of the given difficulty in the background, so the next game starts instantly
+     */
+    public void prepareGames(Difficulty difficulty) {
+        pool.warmUp(difficulty);
+    }
+
     public Sudoku getGame() {
         return sudoku.getGame();
     }
@@ -28,42 +86,110 @@ public class SudokuHandler {
         return sudoku.getInitialGameState();
     }
 
+    /**
+     * Sets the number of a cell and records the move for undo
+     */
+    public void play(int num, int cell) {
+        sudoku.play(num, cell);
+        if (journal != null) journal.play(num, cell);
+    }
+
+    /**
+     * @return The cell that was changed, or -1 if there is nothing to undo
+     */
+    public int undo() {
+        int cell = sudoku.undo();
+        if (journal != null && cell >= 0) journal.undo();
+        return cell;
+    }
+
+    /**
+     * @return The cell that was changed, or -1 if there is nothing to redo
+     */
+    public int redo() {
+        int cell = sudoku.redo();
+        if (journal != null && cell >= 0) journal.redo();
+        return cell;
+    }
+
     public int getTurn() {
         return sudoku.getTurns();
     }
 
     public void resetTurns() {
         sudoku.setTurns(0);
+        if (journal != null) journal.turns(0);
     }
 
     public void incrementTurn() {
-        if (!locked)
-            sudoku.incrementTurn();
+        sudoku.incrementTurn();
+        if (journal != null) journal.turns(sudoku.getTurns());
     }
 
     public void save() {
+        PersistenceEvent event = Metrics.isRecording() ? new PersistenceEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        boolean saved = false;
         try (var out = Files.newOutputStream(SAVE_FILE);) {
             sudoku.save(out);
+            sudoku.getHistory().write(out, sudoku.getGame().getGrid());
+            saved = true;
         } catch (IOException e) {
             System.err.println("Failed to save game");
             e.printStackTrace();
         }
+        recordPersistence(event, "save", start, saved);
     }
 
+    /**
+     * Saves the current game and the ready puzzles
+     */
+    public void shutdown() {
+        if (journal != null) {
+            journal.close();
+        } else if (sudoku != null) {
+            save();
+        }
+        generation.close();
+        pool.close();
+    }
+
+    /**
+     * Loads the saved game, including the moves journaled after the last snapshot
+     */
     public boolean load() {
-        if (Files.exists(SAVE_FILE)) {
-            try (var in = Files.newInputStream(SAVE_FILE)) {
-                sudoku = SudokuFactory.load(in);
-                return true;
-            } catch (Exception e) {
-                e.printStackTrace();
-                return false;
-            }
+        PersistenceEvent event = Metrics.isRecording() ? new PersistenceEvent() : null;
+        if (event != null) event.begin();
+        long start = System.nanoTime();
+        try {
+            sudoku = MoveJournal.recover(SAVE_FILE);
+        } catch (Exception e) {
+            e.printStackTrace();
+            recordPersistence(event, "load", start, false);
+            return false;
         }
-        return false;
+        recordPersistence(event, "load", start, sudoku != null);
+        if (sudoku == null) {
+            return false;
+        }
+        startJournal();
+        return true;
     }
 
-    public void lockTurnCount(boolean lockTurnCount) {
-        this.locked = lockTurnCount;
+    /**
+     * Emits the event, if recording, and records the time in the {@link Metrics} {@code game.<operation>}
+     */
+    private static void recordPersistence(PersistenceEvent event, String operation, long start, boolean succeeded) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation;
+                event.path = SAVE_FILE.toString();
+                event.succeeded = succeeded;
+                event.commit();
+            }
+        }
+        Metrics.recordSince("game." + operation, start);
     }
 }
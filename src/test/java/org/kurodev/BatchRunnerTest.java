@@ -0,0 +1,43 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.cli.BatchRunner;
+import org.kurodev.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+    @Test
+    public void testResultsKeepInputOrder() throws IOException {
+        List<Integer> results = new ArrayList<>();
+        BatchRunner.Stats stats = new BatchRunner(4, 8).run(IntStream.range(0, 500).iterator(), i -> {
+            //finish out of order
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(100_000));
+            return i * 2;
+        }, results::add);
+        assertEquals(500, stats.count());
+        assertEquals(500, stats.latencies().count());
+        assertEquals(IntStream.range(0, 500).map(i -> i * 2).boxed().toList(), results);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(1_000_000, histogram.max());
+        //buckets are at most 1/16 wide
+        assertEquals(500_000, histogram.percentile(50), 500_000 / 16.0);
+        assertEquals(990_000, histogram.percentile(99), 990_000 / 16.0);
+        assertEquals(1_000_000, histogram.percentile(100));
+        assertEquals(0, new LatencyHistogram().percentile(50));
+    }
+}
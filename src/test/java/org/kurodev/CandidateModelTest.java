@@ -0,0 +1,48 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.ui.CandidateModel;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CandidateModelTest {
+    @Test
+    public void testIncrementalUpdatesMatchRecompute() {
+        for (Grid grid : new Grid[]{Grid.STANDARD, Grid.of(4)}) {
+            Sudoku game = SudokuFactory.create(Difficulty.HARD, grid, "notes", new BacktrackingSudokuGenerator()).getGame();
+            CandidateModel model = new CandidateModel(game);
+            Random rng = new Random(1);
+            for (int move = 0; move < 500; move++) {
+                int cell = rng.nextInt(grid.cells());
+                int num = rng.nextInt(grid.size() + 1);
+                if (game.getNum(cell) == num) continue;
+                int[] before = snapshot(model, grid);
+                game.setNum(num, cell);
+                BitSet reported = new BitSet();
+                model.cellChanged(cell, reported::set);
+
+                CandidateModel expected = new CandidateModel(game);
+                for (int other = 0; other < grid.cells(); other++) {
+                    assertEquals(expected.get(other), model.get(other), "Wrong candidates at " + other);
+                    assertEquals(before[other] != model.get(other), reported.get(other), "Change not reported at " + other);
+                }
+            }
+        }
+    }
+
+    private static int[] snapshot(CandidateModel model, Grid grid) {
+        int[] out = new int[grid.cells()];
+        for (int cell = 0; cell < out.length; cell++) {
+            out[cell] = model.get(cell);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,240 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+import org.kurodev.sudoku.symmetry.CanonicalHash;
+import org.kurodev.sudoku.symmetry.Canonicalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CanonicalTest {
+    @Test
+    public void testTransformedPuzzlesShareCanonicalForm() {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Random rng = new Random(16);
+        for (SudokuWithSolution game : SudokuFactory.createBatch(Difficulty.HARD, 50, "canonical")) {
+            Sudoku puzzle = game.getInitialGameState();
+            Sudoku canonical = canonicalizer.canonicalize(puzzle);
+            CanonicalHash hash = canonicalizer.hash(puzzle);
+            assertEquals(puzzle.getFilledCount(), canonical.getFilledCount());
+            assertEquals(canonical, canonicalizer.canonicalize(canonical));
+            for (int i = 0; i < 5; i++) {
+                Sudoku transformed = shuffle(puzzle, rng);
+                assertEquals(canonical, canonicalizer.canonicalize(transformed));
+                assertEquals(hash, canonicalizer.hash(transformed));
+            }
+        }
+    }
+
+    @Test
+    public void testTransformedSolutionsShareCanonicalForm() {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Random rng = new Random(81);
+        for (SudokuWithSolution game : SudokuFactory.createBatch(Difficulty.EASY, 50, "grids")) {
+            Sudoku grid = new DancingLinksSolver().solve(game.getInitialGameState()).solution();
+            Sudoku canonical = canonicalizer.canonicalize(grid);
+            assertTrue(canonical.isSolved());
+            //the first row of a full canonical field is always 1 to 9
+            for (int col = 0; col < 9; col++) {
+                assertEquals(col + 1, canonical.getNum(col));
+            }
+            for (int i = 0; i < 5; i++) {
+                assertEquals(canonical, canonicalizer.canonicalize(shuffle(grid, rng)));
+            }
+        }
+    }
+
+    @Test
+    public void testDistinctPuzzlesStayDistinct() {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Set<CanonicalHash> hashes = new HashSet<>();
+        List<SudokuWithSolution> games = SudokuFactory.createBatch(Difficulty.MEDIUM, 200, "distinct");
+        for (SudokuWithSolution game : games) {
+            hashes.add(canonicalizer.hash(game.getInitialGameState()));
+        }
+        assertEquals(games.size(), hashes.size());
+    }
+
+    @Test
+    public void testOtherSizes() {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Random rng = new Random(4);
+        Sudoku puzzle = SudokuFactory.create(Difficulty.EASY, Grid.of(4), "canonical", new BacktrackingSudokuGenerator()).getInitialGameState();
+        Sudoku canonical = canonicalizer.canonicalize(puzzle);
+        assertEquals(canonical, canonicalizer.canonicalize(shuffle(puzzle, rng)));
+    }
+
+    @Test
+    public void testCanonicalFormIsMinimal() {
+        Canonicalizer canonicalizer = new Canonicalizer();
+        Grid grid = Grid.of(2);
+        Random rng = new Random(128);
+        for (int i = 0; i < 500; i++) {
+            Sudoku field = Sudoku.ofSize(grid);
+            //random clues, repeated numbers and conflicts included
+            for (int cell = 0; cell < grid.cells(); cell++) {
+                if (rng.nextInt(3) != 0) {
+                    field.setNum(rng.nextInt(grid.size()) + 1, cell);
+                }
+            }
+            assertArrayEquals(exhaustiveMinimum(field), canonicalizer.canonicalCells(field), field.toString());
+        }
+    }
+
+    /**
+     * Tries every line permutation and transposition and relabels each result by first appearance,
+     * which is the smallest relabeling of a fixed arrangement
+     */
+    private static byte[] exhaustiveMinimum(Sudoku sudoku) {
+        Grid grid = sudoku.getGrid();
+        int size = grid.size();
+        List<int[]> permutations = linePermutations(grid);
+        byte[] best = null;
+        for (boolean transpose : new boolean[]{false, true}) {
+            for (int[] rows : permutations) {
+                for (int[] cols : permutations) {
+                    byte[] candidate = new byte[grid.cells()];
+                    int[] labels = new int[size + 1];
+                    int next = 1;
+                    for (int row = 0; row < size; row++) {
+                        for (int col = 0; col < size; col++) {
+                            int num = transpose ? sudoku.getNum(grid.indexOf(rows[row], cols[col]))
+                                    : sudoku.getNum(grid.indexOf(cols[col], rows[row]));
+                            if (num != 0 && labels[num] == 0) {
+                                labels[num] = next++;
+                            }
+                            candidate[row * size + col] = (byte) labels[num];
+                        }
+                    }
+                    if (best == null || compareCells(candidate, best, size) < 0) {
+                        best = candidate;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compares row by row, with empty cells bigger than every number
+     */
+    private static int compareCells(byte[] a, byte[] b, int size) {
+        for (int cell = 0; cell < a.length; cell++) {
+            int x = a[cell] == 0 ? size + 1 : a[cell];
+            int y = b[cell] == 0 ? size + 1 : b[cell];
+            if (x != y) return Integer.compare(x, y);
+        }
+        return 0;
+    }
+
+    /**
+     * @return Every order of the lines that keeps bands together
+     */
+    private static List<int[]> linePermutations(Grid grid) {
+        int boxSize = grid.boxSize();
+        List<int[]> orders = permutations(boxSize);
+        List<int[]> out = new ArrayList<>();
+        out.add(new int[0]);
+        for (int position = 0; position < boxSize; position++) {
+            List<int[]> extended = new ArrayList<>();
+            for (int[] prefix : out) {
+                for (int band = 0; band < boxSize; band++) {
+                    boolean used = false;
+                    for (int line = 0; line < prefix.length; line += boxSize) {
+                        used |= prefix[line] / boxSize == band;
+                    }
+                    if (used) continue;
+                    for (int[] order : orders) {
+                        int[] lines = Arrays.copyOf(prefix, prefix.length + boxSize);
+                        for (int i = 0; i < boxSize; i++) {
+                            lines[prefix.length + i] = band * boxSize + order[i];
+                        }
+                        extended.add(lines);
+                    }
+                }
+            }
+            out = extended;
+        }
+        return out;
+    }
+
+    private static List<int[]> permutations(int n) {
+        List<int[]> out = new ArrayList<>();
+        out.add(new int[0]);
+        for (int length = 1; length <= n; length++) {
+            List<int[]> extended = new ArrayList<>();
+            for (int[] prefix : out) {
+                for (int insert = 0; insert < length; insert++) {
+                    int[] permutation = new int[length];
+                    for (int i = 0, j = 0; i < length; i++) {
+                        permutation[i] = i == insert ? length - 1 : prefix[j++];
+                    }
+                    extended.add(permutation);
+                }
+            }
+            out = extended;
+        }
+        return out;
+    }
+
+    /**
+     * Applies a random relabeling, line permutation and transposition
+     */
+    static Sudoku shuffle(Sudoku sudoku, Random rng) {
+        Grid grid = sudoku.getGrid();
+        int size = grid.size();
+        int[] rows = linePermutation(grid, rng);
+        int[] cols = linePermutation(grid, rng);
+        List<Integer> labels = new ArrayList<>();
+        for (int num = 1; num <= size; num++) {
+            labels.add(num);
+        }
+        Collections.shuffle(labels, rng);
+        boolean transpose = rng.nextBoolean();
+        Sudoku out = sudoku.copyState();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int num = sudoku.getNum(grid.indexOf(cols[col], rows[row]));
+                int target = transpose ? grid.indexOf(row, col) : grid.indexOf(col, row);
+                out.setNum(num == 0 ? 0 : labels.get(num - 1), target);
+            }
+        }
+        return out;
+    }
+
+    private static int[] linePermutation(Grid grid, Random rng) {
+        int boxSize = grid.boxSize();
+        List<Integer> bands = new ArrayList<>();
+        for (int band = 0; band < boxSize; band++) {
+            bands.add(band);
+        }
+        Collections.shuffle(bands, rng);
+        int[] out = new int[grid.size()];
+        int i = 0;
+        for (int band : bands) {
+            List<Integer> lines = new ArrayList<>();
+            for (int line = 0; line < boxSize; line++) {
+                lines.add(band * boxSize + line);
+            }
+            Collections.shuffle(lines, rng);
+            for (int line : lines) {
+                out[i++] = line;
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,80 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.io.SudokuCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodecTest {
+    @Test
+    public void testBufferMatchesStreamFormat() throws IOException {
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.MEDIUM, "codec");
+        game.setTurns(12);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        game.save(baos);
+        byte[] stream = baos.toByteArray();
+        assertEquals(SudokuCodec.gameSize(Grid.STANDARD), stream.length);
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(stream.length + 3);
+        direct.position(3);
+        SudokuCodec.encode(game, direct);
+        assertFalse(direct.hasRemaining());
+        direct.position(3);
+        assertEquals(ByteBuffer.wrap(stream), direct);
+
+        assertEquals(game, SudokuCodec.decodeGame(direct));
+        assertFalse(direct.hasRemaining());
+    }
+
+    @Test
+    public void testPartialBufferIsNotConsumed() {
+        Sudoku sudoku = SudokuFactory.create(Difficulty.EASY, Grid.of(4), "codec", new BacktrackingSudokuGenerator()).getGame();
+        ByteBuffer full = ByteBuffer.allocate(SudokuCodec.stateSize(sudoku.getGrid()));
+        SudokuCodec.encode(sudoku, full);
+        full.flip();
+
+        ByteBuffer partial = ByteBuffer.allocate(full.capacity());
+        partial.put(full.slice(0, 10)).flip();
+        assertEquals(full.capacity(), SudokuCodec.stateSize(partial));
+        assertThrows(BufferUnderflowException.class, () -> SudokuCodec.decode(partial));
+        assertEquals(0, partial.position());
+
+        //the rest of the bytes arrive later
+        partial.position(partial.limit()).limit(partial.capacity());
+        partial.put(full.slice(10, full.capacity() - 10)).flip();
+        assertEquals(sudoku, SudokuCodec.decode(partial));
+    }
+
+    @Test
+    public void testLoadHandlesShortReads() throws IOException {
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.HARD, "codec");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        game.save(baos);
+        //returns at most one byte per read call
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(baos.toByteArray())) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        assertEquals(game, SudokuFactory.load(trickle));
+
+        byte[] truncated = new byte[baos.size() - 1];
+        System.arraycopy(baos.toByteArray(), 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> SudokuFactory.load(new ByteArrayInputStream(truncated)));
+    }
+}
@@ -0,0 +1,59 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.GenerationService;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.GenerationControl;
+import org.kurodev.sudoku.gen.GradedSudokuGenerator;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GenerationServiceTest {
+    @Test
+    public void testControlDoesNotChangeResult() {
+        for (BacktrackingSudokuGenerator generator : new BacktrackingSudokuGenerator[]{new BacktrackingSudokuGenerator(), BacktrackingSudokuGenerator.unique()}) {
+            List<Double> progress = new ArrayList<>();
+            GenerationControl control = new GenerationControl(null, progress::add);
+            SudokuWithSolution controlled = SudokuFactory.create(Difficulty.HARD, Grid.STANDARD, "control", generator, control);
+            assertEquals(SudokuFactory.create(Difficulty.HARD, "control", generator), controlled);
+            assertEquals(1.0, progress.get(progress.size() - 1));
+            for (int i = 1; i < progress.size(); i++) {
+                assertTrue(progress.get(i) > progress.get(i - 1), "Progress went back");
+            }
+        }
+    }
+
+    @Test
+    public void testCancelledControlStopsGeneration() {
+        GenerationControl control = new GenerationControl(null, p -> {
+        });
+        control.cancel();
+        assertThrows(CancellationException.class, () -> SudokuFactory.create(Difficulty.HARD, Grid.STANDARD, "control", BacktrackingSudokuGenerator.unique(), control));
+        GenerationControl expired = new GenerationControl(Duration.ZERO, p -> {
+        });
+        assertThrows(CancellationException.class, () -> SudokuFactory.create(Difficulty.HARD, Grid.STANDARD, "control", new GradedSudokuGenerator(), expired));
+    }
+
+    @Test
+    public void testNewRequestSupersedesOld() throws Exception {
+        try (GenerationService service = new GenerationService(new GradedSudokuGenerator(), 1, 2)) {
+            CompletableFuture<SudokuWithSolution> first = service.submit(Difficulty.HARDEST, null, p -> {
+            });
+            CompletableFuture<SudokuWithSolution> second = service.submit(Difficulty.EASY, null, p -> {
+            });
+            assertTrue(first.isCancelled());
+            assertEquals(Difficulty.EASY, second.get(30, TimeUnit.SECONDS).difficulty());
+        }
+    }
+}
@@ -2,11 +2,18 @@ package org.kurodev;
 
 import org.junit.jupiter.api.Test;
 import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Sudoku;
 import org.kurodev.sudoku.SudokuFactory;
 import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.RemovalStrategy;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,8 +24,9 @@ public class GeneratorTest {
             SudokuWithSolution s = SudokuFactory.create(difficulty, "Test");
             SudokuWithSolution s2 = SudokuFactory.create(difficulty, "Test");
             assertEquals(s, s2);
-            assertTrue(s.getInitialGameState().isValidSudoku(), "Sudoku is not valid.");
-            assertFalse(s.getGame().isValidSudoku(), "Sudoku is valid. but shouldn't be.");
+            //the puzzle has no clashes, but still has empty cells to fill
+            assertEquals(0, s.getInitialGameState().getConflictCount(), "Sudoku has clashing clues.");
+            assertFalse(s.getGame().isSolved(), "Sudoku is already solved.");
         }
 
     }
@@ -39,4 +47,131 @@ public class GeneratorTest {
             s.getInitialGameState().writeState(baos);
             System.out.println("\""+baos+"\"");
     }
+
+    @Test
+    public void testUniqueGenerationHasOneSolution() {
+        DancingLinksSolver solver = new DancingLinksSolver();
+        for (Difficulty difficulty : Difficulty.values()) {
+            SudokuWithSolution s = SudokuFactory.create(difficulty, "Test", BacktrackingSudokuGenerator.unique());
+            assertTrue(solver.solve(s.getInitialGameState(), 2).isUnique(), "Puzzle for " + difficulty + " is not unique");
+            assertEquals(s.getInitialGameState(), s.getGame());
+        }
+        SudokuWithSolution easy = SudokuFactory.create(Difficulty.EASY, "Test", BacktrackingSudokuGenerator.unique());
+        int clues = 0;
+        for (int cell = 0; cell < easy.getGame().getGrid().cells(); cell++) {
+            if (easy.getGame().getNum(cell) != 0) clues++;
+        }
+        assertTrue(clues >= Difficulty.EASY.getMinClues() && clues <= Difficulty.EASY.getMaxClues(), "Clue count " + clues);
+    }
+
+    @Test
+    public void testSeedProducesKnownPuzzle() {
+        SudokuWithSolution s = SudokuFactory.create(Difficulty.MEDIUM, "Test");
+        StringBuilder sb = new StringBuilder();
+        for (int cell = 0; cell < s.getGame().getGrid().cells(); cell++) {
+            sb.append(s.getGame().getNum(cell));
+        }
+        //pinned so that changes to the V2 algorithm which break existing seeds are noticed
+        assertEquals("040002009200009045600040010407000000300060504950300026020090060016287000730000058", sb.toString());
+    }
+
+    @Test
+    public void testBatchDoesNotDependOnThreadCount() {
+        BacktrackingSudokuGenerator generator = new BacktrackingSudokuGenerator();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool multi = new ForkJoinPool(4);
+        try {
+            List<SudokuWithSolution> a = SudokuFactory.createBatch(Difficulty.HARD, 16, "batch", generator, single);
+            List<SudokuWithSolution> b = SudokuFactory.createBatch(Difficulty.HARD, 16, "batch", generator, multi);
+            assertEquals(16, a.size());
+            assertEquals(a, b);
+            assertEquals(SudokuFactory.create(Difficulty.HARD, SudokuFactory.childSeed("batch", 5)), a.get(5));
+        } finally {
+            single.shutdown();
+            multi.shutdown();
+        }
+    }
+
+    @Test
+    public void testStreamIsOrderedAndLazy() {
+        int count = 4 * ForkJoinPool.getCommonPoolParallelism() + 3;
+        List<SudokuWithSolution> streamed = SudokuFactory.stream(Difficulty.EASY, count, "stream").toList();
+        assertEquals(SudokuFactory.createBatch(Difficulty.EASY, count, "stream"), streamed);
+        //only the first window is generated, not a billion puzzles
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () ->
+                assertEquals(streamed.subList(0, 3), SudokuFactory.stream(Difficulty.EASY, Integer.MAX_VALUE, "stream").limit(3).toList()));
+    }
+
+    @Test
+    public void testRotationalRemovalIsSymmetricAndUnique() {
+        BacktrackingSudokuGenerator generator = BacktrackingSudokuGenerator.unique().withRemoval(RemovalStrategy.rotational());
+        Sudoku puzzle = SudokuFactory.create(Difficulty.HARD, "Test", generator).getInitialGameState();
+        int cells = puzzle.getGrid().cells();
+        for (int cell = 0; cell < cells; cell++) {
+            assertEquals(puzzle.getNum(cell) == 0, puzzle.getNum(cells - 1 - cell) == 0, "Not symmetric at " + cell);
+        }
+        assertTrue(new DancingLinksSolver().solve(puzzle, 2).isUnique());
+    }
+
+    @Test
+    public void testMinimalRemovalLeavesOnlyNeededClues() {
+        BacktrackingSudokuGenerator generator = BacktrackingSudokuGenerator.unique().withRemoval(RemovalStrategy.minimal());
+        Sudoku puzzle = SudokuFactory.create(Difficulty.HARDEST, "Test", generator).getInitialGameState();
+        DancingLinksSolver solver = new DancingLinksSolver();
+        assertTrue(solver.solve(puzzle, 2).isUnique());
+        for (int cell = 0; cell < puzzle.getGrid().cells(); cell++) {
+            int num = puzzle.getNum(cell);
+            if (num == 0) continue;
+            puzzle.clearNum(cell);
+            assertFalse(solver.solve(puzzle, 2).isUnique(), "Clue at " + cell + " is not needed");
+            puzzle.setNum(num, cell);
+        }
+    }
+
+    @Test
+    public void testMinimalRemovalStopsAtFloor() {
+        BacktrackingSudokuGenerator generator = BacktrackingSudokuGenerator.unique().withRemoval(RemovalStrategy.minimal());
+        Sudoku puzzle = SudokuFactory.create(Difficulty.VERY_EASY, "Test", generator).getInitialGameState();
+        assertTrue(puzzle.getFilledCount() >= Difficulty.VERY_EASY.getMinClues(), "Clue count " + puzzle.getFilledCount());
+        assertTrue(puzzle.getFilledCount() <= Difficulty.VERY_EASY.getMaxClues(), "Clue count " + puzzle.getFilledCount());
+    }
+
+    @Test
+    public void testPatternWithoutUniqueSolutionFails() {
+        BacktrackingSudokuGenerator generator = BacktrackingSudokuGenerator.unique()
+                .withRemoval(RemovalStrategy.pattern("xxxxxxxxx" + ".".repeat(72)));
+        assertThrows(IllegalStateException.class, () -> SudokuFactory.create(Difficulty.EASY, "Test", generator));
+    }
+
+    @Test
+    public void testPatternRemovalKeepsTemplate() {
+        String template = """
+                x...x...x
+                .x.x.x.x.
+                ..x.x.x..
+                .x.x.x.x.
+                x.x.x.x.x
+                .x.x.x.x.
+                ..x.x.x..
+                .x.x.x.x.
+                x...x...x
+                """;
+        String cells = template.replaceAll("\\s", "");
+        BacktrackingSudokuGenerator generator = BacktrackingSudokuGenerator.unique().withRemoval(RemovalStrategy.pattern(template));
+        Sudoku puzzle = SudokuFactory.create(Difficulty.HARD, "Test", generator).getInitialGameState();
+        for (int cell = 0; cell < cells.length(); cell++) {
+            assertEquals(cells.charAt(cell) == 'x', puzzle.getNum(cell) != 0, "Wrong clue at " + cell);
+        }
+        assertTrue(new DancingLinksSolver().solve(puzzle, 2).isUnique());
+    }
+
+    @Test
+    public void testUniqueHardestReachesClueRange() {
+        BacktrackingSudokuGenerator generator = BacktrackingSudokuGenerator.unique().withUniqueSolution(1000, Duration.ofSeconds(30));
+        for (String seed : new String[]{"Test", "hardest"}) {
+            Sudoku puzzle = SudokuFactory.create(Difficulty.HARDEST, seed, generator).getInitialGameState();
+            assertTrue(puzzle.getFilledCount() <= Difficulty.HARDEST.getMaxClues(), "Clue count " + puzzle.getFilledCount());
+            assertTrue(new DancingLinksSolver().solve(puzzle, 2).isUnique());
+        }
+    }
 }
@@ -0,0 +1,67 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.GradedSudokuGenerator;
+import org.kurodev.sudoku.grade.Grade;
+import org.kurodev.sudoku.grade.LogicalSolver;
+import org.kurodev.sudoku.grade.Step;
+import org.kurodev.sudoku.grade.Technique;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GradeTest {
+    private static final String EASY_PUZZLE =
+            "530070000600195000098000060800060003400803001700020006060000280000419005000080079";
+
+    @Test
+    public void testGradesEasyPuzzle() {
+        Grade grade = new LogicalSolver().grade(SolverTest.parse(EASY_PUZZLE));
+        assertTrue(grade.solved());
+        assertTrue(grade.hardest().compareTo(Technique.HIDDEN_SINGLE) <= 0, "Hardest was " + grade.hardest());
+        assertEquals(51, grade.steps());
+    }
+
+    @Test
+    public void testStepsAgreeWithSolution() {
+        LogicalSolver solver = new LogicalSolver();
+        DancingLinksSolver dlx = new DancingLinksSolver();
+        for (Difficulty difficulty : Difficulty.values()) {
+            SudokuWithSolution s = SudokuFactory.create(difficulty, "grade", BacktrackingSudokuGenerator.unique());
+            Sudoku game = s.getGame();
+            Sudoku solution = dlx.solve(game).solution();
+            Step step;
+            while ((step = solver.nextStep(game)) != null && step.placement()) {
+                int cell = step.changed().get(0);
+                int num = Integer.numberOfTrailingZeros(step.digits());
+                assertEquals(solution.getNum(cell), num, "Wrong " + step.technique() + " at " + cell);
+                game.setNum(num, cell);
+            }
+        }
+    }
+
+    @Test
+    public void testGeneratorTargetsGrade() {
+        GradedSudokuGenerator generator = new GradedSudokuGenerator();
+        for (Difficulty difficulty : new Difficulty[]{Difficulty.VERY_EASY, Difficulty.MEDIUM}) {
+            SudokuWithSolution s = SudokuFactory.create(difficulty, "graded", generator);
+            assertEquals(difficulty, new LogicalSolver().grade(s.getInitialGameState()).difficulty());
+            assertEquals(s, SudokuFactory.create(difficulty, "graded", generator));
+        }
+    }
+
+    @Test
+    public void testGeneratorKeepsGrid() {
+        Grid grid = Grid.of(4);
+        SudokuWithSolution s = SudokuFactory.create(Difficulty.EASY, grid, "graded", new GradedSudokuGenerator(BacktrackingSudokuGenerator.unique(), 3));
+        assertSame(grid, s.getInitialGameState().getGrid());
+        assertSame(grid, s.getGame().getGrid());
+        assertEquals(1, new DancingLinksSolver().solve(s.getInitialGameState(), 2).solutions());
+    }
+}
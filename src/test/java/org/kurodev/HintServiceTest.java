@@ -0,0 +1,55 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.grade.LogicalSolver;
+import org.kurodev.sudoku.grade.Step;
+import org.kurodev.ui.HintService;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HintServiceTest {
+    private static final String EASY_PUZZLE =
+            "530070000600195000098000060800060003400803001700020006060000280000419005000080079";
+
+    @Test
+    public void testHintMatchesSolverAndIsCached() throws Exception {
+        Sudoku board = SolverTest.parse(EASY_PUZZLE);
+        Step expected = new LogicalSolver().nextStep(board);
+        try (HintService hints = new HintService()) {
+            CompletableFuture<Optional<Step>> first = hints.requestHint(board);
+            //changing the board after the request must not change the hint
+            board.setNum(1, 2);
+            board.clearNum(2);
+            assertEquals(Optional.of(expected), first.get());
+
+            CompletableFuture<Optional<Step>> second = hints.requestHint(board);
+            assertTrue(second.isDone(), "Hint for the same board was not cached");
+            assertEquals(first.get(), second.get());
+        }
+    }
+
+    @Test
+    public void testClashingBoardFails() {
+        Sudoku board = SolverTest.parse(EASY_PUZZLE);
+        board.setNum(5, 2);
+        try (HintService hints = new HintService()) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> hints.requestHint(board).get());
+            assertInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void testBoardChangeCancelsPendingHint() {
+        try (HintService hints = new HintService()) {
+            CompletableFuture<Optional<Step>> hint = hints.requestHint(SolverTest.parse(EASY_PUZZLE));
+            hints.boardChanged();
+            //either it was cancelled, or it finished before the change
+            assertTrue(hint.isDone());
+        }
+    }
+}
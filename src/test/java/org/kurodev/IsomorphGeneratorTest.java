@@ -0,0 +1,62 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.IsomorphSudokuGenerator;
+import org.kurodev.sudoku.grade.LogicalSolver;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+import org.kurodev.sudoku.symmetry.Canonicalizer;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IsomorphGeneratorTest {
+    @Test
+    public void testVariantsKeepUniquenessAndGrade() {
+        SudokuWithSolution base = SudokuFactory.create(Difficulty.HARD, "isomorph", BacktrackingSudokuGenerator.unique());
+        Sudoku basePuzzle = base.getInitialGameState();
+        IsomorphSudokuGenerator generator = new IsomorphSudokuGenerator(base);
+        Canonicalizer canonicalizer = new Canonicalizer();
+        LogicalSolver grader = new LogicalSolver();
+        DancingLinksSolver solver = new DancingLinksSolver();
+
+        Set<Sudoku> variants = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            SudokuWithSolution variant = SudokuFactory.create(Difficulty.HARD, "variant" + i, generator);
+            Sudoku puzzle = variant.getInitialGameState();
+            assertEquals(variant.getGame(), puzzle);
+            assertEquals(basePuzzle.getFilledCount(), puzzle.getFilledCount());
+            assertTrue(solver.solve(puzzle, 2).isUnique());
+            assertEquals(grader.grade(basePuzzle).hardest(), grader.grade(puzzle).hardest());
+            assertEquals(canonicalizer.hash(basePuzzle), canonicalizer.hash(puzzle));
+            variants.add(puzzle);
+        }
+        assertTrue(variants.size() > 45, "Variants should look different");
+
+        assertEquals(SudokuFactory.create(Difficulty.HARD, "same", generator), SudokuFactory.create(Difficulty.HARD, "same", generator));
+        assertThrows(IllegalArgumentException.class, () -> SudokuFactory.create(Difficulty.EASY, "x", generator));
+    }
+
+    @Test
+    public void testBasesOfDifferentSizes() {
+        BacktrackingSudokuGenerator source = new BacktrackingSudokuGenerator();
+        SudokuWithSolution standard = SudokuFactory.create(Difficulty.EASY, Grid.STANDARD, "isomorph", source);
+        SudokuWithSolution small = SudokuFactory.create(Difficulty.EASY, Grid.of(2), "isomorph", source);
+        IsomorphSudokuGenerator generator = new IsomorphSudokuGenerator(standard, small);
+        Canonicalizer canonicalizer = new Canonicalizer();
+        for (int i = 0; i < 20; i++) {
+            Sudoku puzzle = SudokuFactory.create(Difficulty.EASY, Grid.STANDARD, "variant" + i, generator).getInitialGameState();
+            assertEquals(canonicalizer.hash(standard.getInitialGameState()), canonicalizer.hash(puzzle));
+            puzzle = SudokuFactory.create(Difficulty.EASY, Grid.of(2), "variant" + i, generator).getInitialGameState();
+            assertEquals(canonicalizer.hash(small.getInitialGameState()), canonicalizer.hash(puzzle));
+        }
+        assertThrows(IllegalArgumentException.class, () -> SudokuFactory.create(Difficulty.EASY, Grid.of(4), "x", generator));
+    }
+}
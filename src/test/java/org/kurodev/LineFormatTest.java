@@ -0,0 +1,63 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.io.LineFormatReader;
+import org.kurodev.sudoku.io.LineFormatWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineFormatTest {
+    private static final String PUZZLE = "53..7....6..195....98....6.8...6...34..8.3..17...2...6.6....28....419..5....8..79";
+
+    @Test
+    public void testWriteAndReadBack() throws IOException {
+        Path file = Files.createTempFile("puzzles", ".txt");
+        List<SudokuWithSolution> games = SudokuFactory.createBatch(Difficulty.HARD, 2000, "lines");
+        assertEquals(games.size(), LineFormatWriter.write(file, games.stream().map(SudokuWithSolution::getInitialGameState)));
+        assertEquals(games.size() * 82L, Files.size(file));
+
+        try (Stream<SudokuWithSolution> read = LineFormatReader.games(file, Difficulty.HARD)) {
+            assertEquals(games, read.toList());
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testCommentsBlanksAndTrailingColumns() throws IOException {
+        Path file = Files.createTempFile("puzzles", ".txt");
+        Files.writeString(file, "# exported puzzles\r\n\r\n" + PUZZLE + "\r\n"
+                + PUZZLE.replace('.', '0') + ",rating 4.2\n" + PUZZLE, StandardCharsets.US_ASCII);
+        try (Stream<Sudoku> lines = LineFormatReader.lines(file)) {
+            List<Sudoku> puzzles = lines.toList();
+            assertEquals(3, puzzles.size());
+            assertEquals(puzzles.get(0), puzzles.get(1));
+            assertEquals(puzzles.get(0), puzzles.get(2));
+            assertEquals(5, puzzles.get(0).getNum(0));
+            assertEquals(0, puzzles.get(0).getNum(2));
+            assertEquals(30, puzzles.get(0).getFilledCount());
+        }
+
+        Files.writeString(file, PUZZLE + "\n" + PUZZLE.substring(1) + "\n");
+        try (LineFormatReader reader = LineFormatReader.open(file)) {
+            assertNotNull(reader.next());
+            IOException e = assertThrows(IOException.class, reader::next);
+            assertTrue(e.getMessage().contains("Line 2"), e.getMessage());
+        }
+        try (Stream<Sudoku> lines = LineFormatReader.lines(file)) {
+            assertThrows(UncheckedIOException.class, lines::count);
+        }
+        Files.delete(file);
+    }
+}
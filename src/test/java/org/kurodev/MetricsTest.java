@@ -0,0 +1,94 @@
+package org.kurodev;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kurodev.metrics.GenerationEvent;
+import org.kurodev.metrics.Metrics;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.GenerationControl;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+    @AfterEach
+    public void disable() {
+        Metrics.disable();
+        Metrics.reset();
+    }
+
+    @Test
+    public void testGenerationIsRecordedPerDifficulty() {
+        Metrics.enable();
+        Metrics.reset();
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.EASY, "metrics");
+        new DancingLinksSolver().solve(game.getInitialGameState());
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        assertTrue(snapshot.counters().get("generate.iterations") >= game.getGame().getGrid().cells());
+        assertNotNull(snapshot.counters().get("generate.backtracks"));
+        assertEquals(1, snapshot.histograms().get("generate.time.EASY").count());
+        assertEquals(1, snapshot.histograms().get("solve.time").count());
+        assertTrue(snapshot.toString().contains("generate.time.EASY count=1 p50="));
+    }
+
+    @Test
+    public void testCancelledGenerationIsCountedSeparately() {
+        Metrics.enable();
+        Metrics.reset();
+        GenerationControl control = new GenerationControl(null, fraction -> {
+        });
+        control.cancel();
+        assertThrows(CancellationException.class, () ->
+                SudokuFactory.create(Difficulty.HARD, Grid.STANDARD, "cancel", BacktrackingSudokuGenerator.unique(), control));
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        assertEquals(1, snapshot.counters().get("generate.cancelled"));
+        Metrics.Summary time = snapshot.histograms().get("generate.time.HARD");
+        assertTrue(time == null || time.count() == 0);
+    }
+
+    @Test
+    public void testDisabledMetricsRecordNothing() {
+        Metrics.reset();
+        SudokuFactory.create(Difficulty.MEDIUM, "disabled");
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        assertTrue(snapshot.counters().values().stream().allMatch(sum -> sum == 0));
+        assertTrue(snapshot.histograms().values().stream().allMatch(summary -> summary.count() == 0));
+    }
+
+    @Test
+    public void testGenerationEmitsFlightRecorderEvent(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("generation.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(GenerationEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            SudokuFactory.create(Difficulty.HARD, "jfr", BacktrackingSudokuGenerator.unique());
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                .filter(event -> event.getEventType().getName().equals("org.kurodev.sudoku.Generation"))
+                .toList();
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals("HARD", event.getString("difficulty"));
+        assertEquals(9, event.getInt("size"));
+        assertTrue(event.getLong("iterations") >= 81);
+        assertFalse(event.getBoolean("cancelled"));
+    }
+}
@@ -0,0 +1,118 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
+import org.kurodev.sudoku.MoveHistory;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.io.SudokuCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveHistoryTest {
+    @Test
+    public void testUndoRedoRestoresStates() {
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.MEDIUM, "history");
+        List<Sudoku> states = new ArrayList<>();
+        states.add(game.getGame().copyState());
+        int[] empty = emptyCells(game.getGame());
+        for (int i = 0; i < 10; i++) {
+            game.play(i % 9 + 1, empty[i % 4]);
+            states.add(game.getGame().copyState());
+        }
+        for (int i = 10; i > 0; i--) {
+            assertTrue(game.undo() >= 0);
+            assertEquals(states.get(i - 1), game.getGame());
+        }
+        assertEquals(-1, game.undo());
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(game.redo() >= 0);
+            assertEquals(states.get(i), game.getGame());
+        }
+        assertEquals(-1, game.redo());
+
+        //a new move discards the undone ones
+        game.undo();
+        game.undo();
+        game.play(0, empty[0]);
+        assertFalse(game.getHistory().canRedo());
+        assertEquals(9, game.getHistory().size());
+    }
+
+    @Test
+    public void testCapacityDropsOldestMoves() {
+        MoveHistory history = new MoveHistory(4);
+        for (int i = 1; i <= 9; i++) {
+            history.record(i, i - 1, i);
+        }
+        assertEquals(4, history.size());
+        assertEquals(MoveHistory.pack(6, 5, 6), history.get(0));
+        assertEquals(MoveHistory.pack(9, 8, 9), history.get(3));
+    }
+
+    @Test
+    public void testGrowsUpToCapacity() {
+        MoveHistory history = new MoveHistory(40);
+        for (int i = 1; i <= 100; i++) {
+            history.record(i, 0, i % 200 + 1);
+        }
+        assertEquals(40, history.size());
+        assertEquals(40, history.capacity());
+        for (int i = 0; i < 40; i++) {
+            assertEquals(MoveHistory.pack(61 + i, 0, (61 + i) % 200 + 1), history.get(i));
+        }
+    }
+
+    @Test
+    public void testSaveRoundTrip() throws IOException {
+        for (Grid grid : new Grid[]{Grid.STANDARD, Grid.of(4)}) {
+            SudokuWithSolution game = SudokuFactory.create(Difficulty.EASY, grid, "history", new BacktrackingSudokuGenerator());
+            int[] empty = emptyCells(game.getGame());
+            for (int i = 0; i < 50; i++) {
+                game.play(i % grid.size() + 1, empty[i % empty.length]);
+            }
+            game.undo();
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            game.save(baos);
+            game.getHistory().write(baos, grid);
+            assertEquals(SudokuCodec.gameSize(grid) + 4 + 50 * SudokuCodec.moveSize(grid), baos.size());
+
+            ByteArrayInputStream in = new ByteArrayInputStream(baos.toByteArray());
+            SudokuWithSolution restored = SudokuFactory.load(in);
+            restored.getHistory().read(in, grid);
+            assertEquals(game, restored);
+            assertEquals(49, restored.getHistory().position());
+            for (int i = 0; i < 50; i++) {
+                assertEquals(game.getHistory().get(i), restored.getHistory().get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testSaveWithoutHistoryCanBeRead() throws IOException {
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.EASY, "history");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        game.save(baos);
+        ByteArrayInputStream in = new ByteArrayInputStream(baos.toByteArray());
+        SudokuWithSolution restored = SudokuFactory.load(in);
+        restored.getHistory().read(in, Grid.STANDARD);
+        assertEquals(0, restored.getHistory().size());
+    }
+
+    private static int[] emptyCells(Sudoku sudoku) {
+        List<Integer> out = new ArrayList<>();
+        for (int cell = 0; cell < sudoku.getGrid().cells(); cell++) {
+            if (sudoku.getNum(cell) == 0) out.add(cell);
+        }
+        return out.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,94 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.io.MoveJournal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoveJournalTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testRecoversMovesWithoutClose() throws Exception {
+        Path file = dir.resolve("game.sudoku");
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.MEDIUM, "journal");
+        MoveJournal journal = new MoveJournal(file, game);
+        play(game, journal, 20);
+        journal.sync().get();
+
+        //the writer is still running, as if the process was killed right now
+        SudokuWithSolution recovered = MoveJournal.recover(file);
+        assertEquals(game, recovered);
+        assertEquals(game.getHistory().position(), recovered.getHistory().position());
+        journal.close();
+    }
+
+    @Test
+    public void testIgnoresTornRecord() throws Exception {
+        Path file = dir.resolve("game.sudoku");
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.MEDIUM, "journal");
+        MoveJournal journal = new MoveJournal(file, game);
+        play(game, journal, 5);
+        journal.sync().get();
+        SudokuWithSolution expected = MoveJournal.recover(file);
+        Files.write(dir.resolve("game.sudoku.journal"), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        assertEquals(expected, MoveJournal.recover(file));
+        assertEquals(game, expected);
+        journal.close();
+    }
+
+    @Test
+    public void testCompactionKeepsJournalSmall() throws Exception {
+        Path file = dir.resolve("game.sudoku");
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.EASY, "journal");
+        try (MoveJournal journal = new MoveJournal(file, game, 10)) {
+            play(game, journal, 200);
+            journal.sync().get();
+            assertTrue(Files.size(dir.resolve("game.sudoku.journal")) < 8 + 10 * 5, "Journal was not compacted");
+            assertEquals(game, MoveJournal.recover(file));
+        }
+        assertEquals(game, MoveJournal.recover(file));
+        assertEquals(8, Files.size(dir.resolve("game.sudoku.journal")));
+    }
+
+    @Test
+    public void testReadsPlainSaveFile() throws IOException {
+        Path file = dir.resolve("game.sudoku");
+        SudokuWithSolution game = SudokuFactory.create(Difficulty.EASY, "journal");
+        try (var out = Files.newOutputStream(file)) {
+            game.save(out);
+        }
+        assertEquals(game, MoveJournal.recover(file));
+        assertNull(MoveJournal.recover(dir.resolve("missing.sudoku")));
+    }
+
+    /**
+     * Plays, undoes and redoes moves on the empty cells of the game
+     */
+    private static void play(SudokuWithSolution game, MoveJournal journal, int moves) {
+        int size = game.getGame().getSize();
+        for (int i = 0, cell = 0; i < moves; i++, cell = (cell + 7) % game.getGame().getGrid().cells()) {
+            if (game.getInitialGameState().getNum(cell) != 0) continue;
+            if (i % 5 == 4) {
+                game.undo();
+                journal.undo();
+            } else {
+                int num = i % size + 1;
+                game.play(num, cell);
+                journal.play(num, cell);
+            }
+            game.incrementTurn();
+            journal.turns(game.getTurns());
+        }
+    }
+}
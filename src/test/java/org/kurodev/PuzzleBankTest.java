@@ -0,0 +1,120 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.io.PuzzleBank;
+import org.kurodev.sudoku.io.PuzzleBankWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PuzzleBankTest {
+    private static final int HEADER_SIZE = 128;
+
+    @Test
+    public void testWriteAppendAndRead(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("puzzles.bank");
+        List<SudokuWithSolution> hard = SudokuFactory.createBatch(Difficulty.HARD, 5, "bank");
+        List<SudokuWithSolution> easy = SudokuFactory.createBatch(Difficulty.EASY, 3, "bank");
+
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.appendAll(hard.stream());
+        }
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.appendAll(easy.stream());
+        }
+
+        try (PuzzleBank bank = PuzzleBank.open(file)) {
+            assertEquals(5, bank.count(Difficulty.HARD));
+            assertEquals(3, bank.count(Difficulty.EASY));
+            assertEquals(0, bank.count(Difficulty.MEDIUM));
+            for (int i = 0; i < hard.size(); i++) {
+                assertEquals(hard.get(i), bank.get(Difficulty.HARD, i));
+                Sudoku solution = bank.getSolution(Difficulty.HARD, i);
+                assertTrue(solution.isValidSudoku());
+            }
+            assertEquals(easy.get(2), bank.get(Difficulty.EASY, 2));
+            assertEquals(Difficulty.EASY, bank.random(Difficulty.EASY).difficulty());
+            assertThrows(IllegalStateException.class, () -> bank.random(Difficulty.MEDIUM));
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(List.of(file), files.toList(), "Writers must not leave other files next to the bank");
+        }
+    }
+
+    @Test
+    public void testAppendKeepsExistingRecordsInPlace(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("puzzles.bank");
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.appendAll(SudokuFactory.createBatch(Difficulty.HARD, 20, "in place").stream());
+        }
+        byte[] before = Files.readAllBytes(file);
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.append(SudokuFactory.create(Difficulty.EASY, "in place"));
+        }
+        byte[] after = Files.readAllBytes(file);
+        //only the header changes, one record and a new index are added behind the old index
+        assertArrayEquals(Arrays.copyOfRange(before, HEADER_SIZE, before.length), Arrays.copyOfRange(after, HEADER_SIZE, before.length));
+        assertTrue(after.length - before.length < 200, "Appended " + (after.length - before.length) + " bytes");
+    }
+
+    @Test
+    public void testUncommittedWritesAreIgnored(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("puzzles.bank");
+        List<SudokuWithSolution> hard = SudokuFactory.createBatch(Difficulty.HARD, 4, "crash");
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.appendAll(hard.stream());
+        }
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.append(SudokuFactory.create(Difficulty.EASY, "crash"));
+        }
+        //records of a writer that crashed before committing
+        Files.write(file, new byte[1000], StandardOpenOption.APPEND);
+        try (PuzzleBank bank = PuzzleBank.open(file)) {
+            assertEquals(4, bank.count(Difficulty.HARD));
+            assertEquals(1, bank.count(Difficulty.EASY));
+        }
+
+        //a torn header write of the last commit, which went to the first slot, falls back to the commit before
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), 20);
+        }
+        try (PuzzleBank bank = PuzzleBank.open(file)) {
+            assertEquals(4, bank.count(Difficulty.HARD));
+            assertEquals(0, bank.count(Difficulty.EASY));
+            assertEquals(hard.get(3), bank.get(Difficulty.HARD, 3));
+        }
+        try (PuzzleBankWriter writer = new PuzzleBankWriter(file)) {
+            writer.append(hard.get(0));
+        }
+        try (PuzzleBank bank = PuzzleBank.open(file)) {
+            assertEquals(5, bank.count(Difficulty.HARD));
+            assertEquals(hard.get(0), bank.get(Difficulty.HARD, 4));
+        }
+    }
+
+    @Test
+    public void testRejectsOtherFiles(@TempDir Path dir) throws IOException {
+        Path truncated = dir.resolve("truncated.bank");
+        Files.write(truncated, new byte[]{0x53, 0x44, 0x4B, 0x42, 0, 2});
+        assertThrows(IOException.class, () -> PuzzleBank.open(truncated));
+        assertThrows(IOException.class, () -> new PuzzleBankWriter(truncated));
+
+        Path other = dir.resolve("other.bank");
+        Files.write(other, new byte[HEADER_SIZE * 2]);
+        assertThrows(IOException.class, () -> PuzzleBank.open(other));
+        assertThrows(IOException.class, () -> new PuzzleBankWriter(other));
+    }
+}
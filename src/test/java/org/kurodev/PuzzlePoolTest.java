@@ -0,0 +1,43 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.PuzzlePool;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PuzzlePoolTest {
+    @Test
+    public void testTakeReturnsRequestedDifficulty() {
+        try (PuzzlePool pool = new PuzzlePool(1, 2)) {
+            SudokuWithSolution s = pool.take(Difficulty.HARD);
+            assertEquals(Difficulty.HARD, s.difficulty());
+            assertEquals(s.getInitialGameState(), s.getGame());
+        }
+    }
+
+    @Test
+    public void testPoolIsPersisted() throws Exception {
+        Path dir = Files.createTempDirectory("pool");
+        Path storage = dir.resolve("puzzles.pool");
+        try (PuzzlePool pool = new PuzzlePool(new BacktrackingSudokuGenerator(), 3, 3, 1, storage)) {
+            pool.warmUp(Difficulty.EASY);
+            for (int i = 0; i < 500 && pool.size(Difficulty.EASY) < 3; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, pool.size(Difficulty.EASY));
+        }
+        try (PuzzlePool pool = new PuzzlePool(new BacktrackingSudokuGenerator(), 3, 3, 1, storage)) {
+            assertEquals(3, pool.size(Difficulty.EASY));
+            assertEquals(0, pool.size(Difficulty.HARD));
+            assertEquals(Difficulty.EASY, pool.take(Difficulty.EASY).difficulty());
+        }
+        Files.deleteIfExists(storage);
+        Files.delete(dir);
+    }
+}
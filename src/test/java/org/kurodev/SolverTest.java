@@ -0,0 +1,62 @@
+package org.kurodev;
+
+import org.junit.jupiter.api.Test;
+import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.SolveResult;
+import org.kurodev.sudoku.Sudoku;
+import org.kurodev.sudoku.SudokuFactory;
+import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SolverTest {
+    private static final String PUZZLE =
+            "530070000600195000098000060800060003400803001700020006060000280000419005000080079";
+    private static final String SOLUTION =
+            "534678912672195348198342567859761423426853791713924856961537284287419635345286179";
+
+    static Sudoku parse(String line) {
+        Sudoku out = SudokuFactory.create(Difficulty.VERY_EASY, "parse").getGame();
+        for (int cell = 0; cell < line.length(); cell++) {
+            char c = line.charAt(cell);
+            out.setNum(c == '.' ? 0 : c - '0', cell);
+        }
+        return out;
+    }
+
+    @Test
+    public void testSolvesKnownPuzzle() {
+        DancingLinksSolver solver = new DancingLinksSolver();
+        Sudoku puzzle = parse(PUZZLE);
+        SolveResult result = solver.solve(puzzle, 2);
+        assertTrue(result.isUnique());
+        assertEquals(parse(SOLUTION), result.solution());
+        assertTrue(result.nodes() > 0);
+        assertEquals(parse(PUZZLE), puzzle, "Puzzle must not be modified");
+    }
+
+    @Test
+    public void testSolverIsReusable() {
+        DancingLinksSolver solver = new DancingLinksSolver();
+        for (Difficulty difficulty : Difficulty.values()) {
+            SudokuWithSolution s = SudokuFactory.create(difficulty, "solver");
+            SolveResult result = solver.solve(s.getInitialGameState());
+            assertTrue(result.isSolved());
+            assertTrue(result.solution().isValidSudoku());
+        }
+        assertEquals(parse(SOLUTION), solver.solve(parse(PUZZLE)).solution());
+    }
+
+    @Test
+    public void testCountsSolutions() {
+        DancingLinksSolver solver = new DancingLinksSolver();
+        Sudoku empty = parse("0".repeat(81));
+        assertEquals(2, solver.solve(empty, 2).solutions());
+
+        Sudoku broken = parse("55" + "0".repeat(79));
+        SolveResult result = solver.solve(broken, 2);
+        assertFalse(result.isSolved());
+        assertNull(result.solution());
+    }
+}
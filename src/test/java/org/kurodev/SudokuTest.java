@@ -2,15 +2,24 @@ package org.kurodev;
 
 import org.junit.jupiter.api.Test;
 import org.kurodev.sudoku.Difficulty;
+import org.kurodev.sudoku.Grid;
 import org.kurodev.sudoku.Sudoku;
 import org.kurodev.sudoku.SudokuFactory;
 import org.kurodev.sudoku.SudokuWithSolution;
+import org.kurodev.sudoku.gen.BacktrackingSudokuGenerator;
+import org.kurodev.sudoku.gen.Coordinate;
+import org.kurodev.sudoku.solve.DancingLinksSolver;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class SudokuTest {
     @Test
@@ -38,4 +47,120 @@ public class SudokuTest {
         var gameRestored = SudokuFactory.load(new ByteArrayInputStream(baos.toByteArray()));
         assertEquals(a, gameRestored);
     }
+
+    @Test
+    public void testPlacementChecksMatchNeighbours() {
+        SudokuWithSolution a = SudokuFactory.create(Difficulty.EASY, "test");
+        Sudoku game = a.getGame();
+        Random rng = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            Coordinate pos = new Coordinate(rng.nextInt(Sudoku.FIELD_SIZE), rng.nextInt(Sudoku.FIELD_SIZE));
+            game.setNum(rng.nextInt(Sudoku.FIELD_SIZE + 1), pos);
+            int conflicting = 0;
+            for (int y = 0; y < Sudoku.FIELD_SIZE; y++) {
+                for (int x = 0; x < Sudoku.FIELD_SIZE; x++) {
+                    Coordinate c = new Coordinate(x, y);
+                    Set<Coordinate> peers = game.getLinePos(c, false);
+                    peers.addAll(game.getGroupPos(c, false));
+                    boolean conflict = peers.stream().anyMatch(p -> game.getNum(p) != 0 && game.getNum(p) == game.getNum(c));
+                    assertEquals(conflict, game.hasConflict(c));
+                    if (conflict) conflicting++;
+                    int candidates = game.getCandidates(c);
+                    for (int num = 1; num <= Sudoku.FIELD_SIZE; num++) {
+                        final int n = num;
+                        boolean expected = peers.stream().noneMatch(p -> game.getNum(p) == n);
+                        assertEquals(expected, game.isNumberValid(num, c));
+                        assertEquals(expected, (candidates & (1 << num)) != 0);
+                    }
+                }
+            }
+            assertEquals(conflicting, game.getConflictCount());
+        }
+        assertFalse(game.isValidSudoku());
+    }
+
+    @Test
+    public void testIndexAccessMatchesCoordinates() {
+        SudokuWithSolution a = SudokuFactory.create(Difficulty.EASY, "test");
+        Sudoku game = a.getGame();
+        Grid grid = game.getGrid();
+        for (int cell = 0; cell < grid.cells(); cell++) {
+            Coordinate c = grid.coordinateOf(cell);
+            assertEquals(game.getNum(c), game.getNum(cell));
+            Set<Coordinate> expected = game.getLinePos(c, false);
+            expected.addAll(game.getGroupPos(c, false));
+            Set<Coordinate> peers = new HashSet<>();
+            game.forEachPeer(cell, peer -> peers.add(grid.coordinateOf(peer)));
+            assertEquals(expected, peers);
+        }
+    }
+
+    @Test
+    public void testCoordinatesOutOfBoundsAreRejected() {
+        Sudoku game = SudokuFactory.create(Difficulty.EASY, "test").getGame();
+        for (Coordinate c : new Coordinate[]{new Coordinate(9, 0), new Coordinate(0, 9), new Coordinate(-1, 1), new Coordinate(9, -1)}) {
+            assertThrows(IndexOutOfBoundsException.class, () -> game.getNum(c));
+            assertThrows(IndexOutOfBoundsException.class, () -> game.setNum(1, c));
+            assertThrows(IndexOutOfBoundsException.class, () -> game.isNumberValid(5, c));
+            assertThrows(IndexOutOfBoundsException.class, () -> game.getCandidates(c));
+            assertThrows(IndexOutOfBoundsException.class, () -> game.hasConflict(c));
+        }
+    }
+
+    @Test
+    public void testDirtyCellsAndSolvedState() {
+        SudokuWithSolution a = SudokuFactory.create(Difficulty.EASY, "test");
+        Sudoku game = a.getGame();
+        Sudoku solution = new DancingLinksSolver().solve(game).solution();
+        game.forEachDirtyCell(cell -> {
+        });
+        int empty = -1;
+        for (int cell = 0; cell < game.getGrid().cells(); cell++) {
+            if (game.getNum(cell) == 0) {
+                game.setNum(solution.getNum(cell), cell);
+                empty = cell;
+            }
+        }
+        assertTrue(game.isSolved());
+        assertEquals(81, game.getFilledCount());
+
+        //place a clashing number, which marks the cell itself and the peers it clashes with
+        int wrong = solution.getNum(empty) % Sudoku.FIELD_SIZE + 1;
+        game.forEachDirtyCell(cell -> {
+        });
+        game.setNum(wrong, empty);
+        assertFalse(game.isSolved());
+        //the number occurs once in each unit of the cell, but the box may share that cell with the row or column
+        assertTrue(game.getConflictCount() == 3 || game.getConflictCount() == 4);
+        List<Integer> dirty = new ArrayList<>();
+        game.forEachDirtyCell(dirty::add);
+        assertEquals(game.getConflictCount(), dirty.size());
+        assertTrue(dirty.contains(empty));
+        game.forEachDirtyCell(cell -> fail("Cells must be clean after draining"));
+
+        game.setNum(solution.getNum(empty), empty);
+        assertTrue(game.isSolved());
+        assertEquals(0, game.getConflictCount());
+    }
+
+    @Test
+    public void testLargerFieldsGenerateAndRestore() throws IOException {
+        for (int boxSize = 2; boxSize <= 5; boxSize++) {
+            Grid grid = Grid.of(boxSize);
+            SudokuWithSolution a = SudokuFactory.create(Difficulty.MEDIUM, grid, "large", new BacktrackingSudokuGenerator());
+            Sudoku game = a.getGame();
+            assertEquals(grid.size(), game.getSize());
+            assertEquals(0, game.getConflictCount(), "Generated field has conflicts:\n" + game);
+            int clues = game.getFilledCount();
+            assertTrue(clues >= Difficulty.MEDIUM.getMinClues(grid.cells()) && clues <= Difficulty.MEDIUM.getMaxClues(grid.cells()));
+            assertTrue(new DancingLinksSolver().solve(game).isSolved());
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            a.save(baos);
+            SudokuWithSolution restored = SudokuFactory.load(new ByteArrayInputStream(baos.toByteArray()));
+            assertEquals(game, restored.getGame());
+            assertEquals(a.getInitialGameState(), restored.getInitialGameState());
+        }
+        assertThrows(IllegalArgumentException.class, () -> Grid.of(6));
+    }
 }